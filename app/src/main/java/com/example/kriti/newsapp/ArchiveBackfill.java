@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.kriti.newsapp;
+
+import android.util.Log;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.example.kriti.newsapp.NewsAppActivity.LOG_TAG;
+
+/**
+ * An {@link ArchiveBackfill} copies the archive for a range of days into local storage.
+ *
+ * The range is split into one window per day. Windows are fetched concurrently, with at most
+ * a fixed number in flight, and each window's pages are fetched in order. Pages are stream
+ * parsed and stored in batched transactions. Every page request goes through the
+ * {@link NetworkDispatcher} as background work, so it yields to anything on screen. After each
+ * page is stored, the window's next page is checkpointed, so a backfill that is cancelled or
+ * killed picks up where it left off when run again for the same query.
+ */
+class ArchiveBackfill {
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
+
+    /** Number of parsed news stored per transaction. */
+    private static final int INSERT_BATCH_SIZE = 100;
+
+    /** Attempts per page before the window is left for the next run. */
+    private static final int MAX_ATTEMPTS = 3;
+
+    /** Wait before the first retry of a failed page, doubled for each further retry. */
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private final NewsDbHelper dbHelper;
+    private final String query;
+    private final int parallelism;
+
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicInteger failedWindows = new AtomicInteger();
+    private String today;
+    private final Set<QueryUtils.Request> inFlight =
+            Collections.newSetFromMap(new ConcurrentHashMap<QueryUtils.Request, Boolean>());
+    private volatile boolean cancelled;
+    private ExecutorService executor;
+
+    /**
+     * Constructs a new {@link ArchiveBackfill}.
+     *
+     * @param dbHelper is the local storage to fill
+     * @param query is the search query to back fill
+     * @param parallelism is the most windows fetched at the same time
+     */
+    ArchiveBackfill(NewsDbHelper dbHelper, String query, int parallelism) {
+        this.dbHelper = dbHelper;
+        this.query = query;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Back fill every day from the one containing fromMillis to the one containing toMillis.
+     * Blocks until all windows are stored, the backfill is cancelled, or the remaining windows
+     * have failed for this run. Days that aren't over yet are never marked done, so a later run
+     * picks up the news published since.
+     *
+     * @return the number of news stored by this run that weren't stored before
+     */
+    long run(long fromMillis, long toMillis) throws InterruptedException {
+        List<String> days = new ArrayList<>();
+        for (long day = fromMillis - fromMillis % DAY_MILLIS; day <= toMillis; day += DAY_MILLIS) {
+            days.add(formatDay(day));
+        }
+        if (days.isEmpty()) {
+            return 0;
+        }
+        today = formatDay(System.currentTimeMillis());
+        String firstDay = days.get(0);
+        String lastDay = days.get(days.size() - 1);
+        dbHelper.addWindows(query, days);
+
+        List<NewsDbHelper.Window> windows = dbHelper.pendingWindows(query, firstDay, lastDay);
+        Log.i(LOG_TAG, "Backfill of " + days.size() + " days, " + windows.size() + " to fetch");
+
+        synchronized (this) {
+            if (cancelled) {
+                return 0;
+            }
+            executor = Executors.newFixedThreadPool(parallelism);
+        }
+        for (final NewsDbHelper.Window window : windows) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        backfillWindow(window);
+                    } catch (RuntimeException e) {
+                        // Leave the window at its last checkpoint for the next run.
+                        Log.e(LOG_TAG, "Error backfilling " + window.day, e);
+                        failedWindows.incrementAndGet();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        return stored.get();
+    }
+
+    /**
+     * Returns whether the backfill was cancelled before it finished.
+     */
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns whether every window was stored, i.e. none was given up on after repeated failures.
+     * Windows that failed resume from their checkpoint on the next run.
+     */
+    boolean isComplete() {
+        return failedWindows.get() == 0;
+    }
+
+    /**
+     * Stop the backfill. Pages already stored are kept and checkpointed.
+     */
+    void cancel() {
+        synchronized (this) {
+            cancelled = true;
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        for (QueryUtils.Request request : inFlight) {
+            request.cancel();
+        }
+    }
+
+    private void backfillWindow(NewsDbHelper.Window window) {
+        // Days are formatted as yyyy-MM-dd, so they compare in date order.
+        boolean dayIsOver = window.day.compareTo(today) < 0;
+        int page = window.nextPage;
+        int pages = window.pages;
+        int attempts = 0;
+        while (!cancelled && (pages == 0 || page <= pages)) {
+            int total = fetchAndStorePage(window.day, page);
+            if (total < 0) {
+                if (cancelled) {
+                    return;
+                }
+                if (++attempts >= MAX_ATTEMPTS) {
+                    Log.e(LOG_TAG, "Giving up on " + window.day + " for this run");
+                    failedWindows.incrementAndGet();
+                    return;
+                }
+                // Back off so a failing server isn't hammered by every window at once.
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS << (attempts - 1));
+                } catch (InterruptedException e) {
+                    // Cancelled while waiting to retry.
+                    return;
+                }
+                continue;
+            }
+            attempts = 0;
+            // A day without results still counts as one (empty) page, so it is marked done.
+            pages = Math.max(1, (total + QueryUtils.ARCHIVE_PAGE_SIZE - 1) / QueryUtils.ARCHIVE_PAGE_SIZE);
+            page++;
+            if (page > pages && !dayIsOver) {
+                // More news may still be published today, and they come after the last page
+                // fetched. Leave the window pending from that page, which is refetched next run.
+                dbHelper.checkpoint(query, window.day, pages, 0);
+            } else {
+                dbHelper.checkpoint(query, window.day, page, pages);
+            }
+        }
+    }
+
+    /**
+     * Fetch one page and store it as it is parsed.
+     *
+     * @return the total reported by the server, or -1 if the page failed or was cancelled
+     */
+    private int fetchAndStorePage(String day, int page) {
+        // Bulk work: waits while anything the user is looking at is being fetched.
+        NetworkDispatcher.Slot slot;
+        try {
+            slot = NetworkDispatcher.get().acquire(NetworkDispatcher.PRIORITY_BACKGROUND);
+        } catch (InterruptedException e) {
+            // Cancelled while waiting for a slot.
+            return -1;
+        }
+
+        QueryUtils.Request request = new QueryUtils.Request();
+        inFlight.add(request);
+        try {
+            if (cancelled) {
+                return -1;
+            }
+            return QueryUtils.fetchArchivePage(query, day, day, page, request,
+                    new QueryUtils.NewsStreamListener() {
+                        @Override
+                        public void onNews(List<News> batch) {
+                            stored.addAndGet(dbHelper.insertNews(batch));
+                        }
+                    }, INSERT_BATCH_SIZE);
+        } finally {
+            inFlight.remove(request);
+            slot.release();
+        }
+    }
+
+    private static String formatDay(long millis) {
+        SimpleDateFormat dayFormatter = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+        dayFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return dayFormatter.format(new Date(millis));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.kriti.newsapp;
+
+import android.support.v4.util.LruCache;
+
+/**
+ * An LRU cache measured in bytes whose maximum size is set by the {@link MemoryBudget}.
+ *
+ * Subclasses only have to estimate how many bytes a value takes.
+ */
+abstract class BudgetedLruCache<K, V> implements MemoryBudget.Cache {
+
+    private final LruCache<K, V> cache;
+    private int maxBytes;
+
+    /**
+     * Constructs a new {@link BudgetedLruCache} and registers it with the {@link MemoryBudget},
+     * which sets its maximum size.
+     *
+     * @param budget is the app-wide memory budget
+     * @param priority is one of the MemoryBudget.PRIORITY_ constants
+     * @param weight is the relative share of the budget this cache should get
+     */
+    BudgetedLruCache(MemoryBudget budget, int priority, int weight) {
+        // The budget enforces the real limit, so the LruCache itself is never full.
+        cache = new LruCache<K, V>(Integer.MAX_VALUE) {
+            @Override
+            protected int sizeOf(K key, V value) {
+                return sizeOfBytes(value);
+            }
+        };
+        budget.register(this, priority, weight);
+    }
+
+    /**
+     * Returns the approximate number of bytes the given value takes on the heap.
+     */
+    protected abstract int sizeOfBytes(V value);
+
+    public V get(K key) {
+        return cache.get(key);
+    }
+
+    /**
+     * Add the value, evicting the least recently used entries to stay within the budget. The
+     * newest value is kept even if it is larger than a trimmed budget on its own, since it is
+     * usually on screen and referenced by the list anyway, so caching continues after a trim.
+     * Only when the whole budget has been taken away is nothing cached.
+     */
+    public synchronized void put(K key, V value) {
+        if (maxBytes == 0) {
+            cache.remove(key);
+            return;
+        }
+        cache.put(key, value);
+        cache.trimToSize(Math.max(maxBytes, sizeOfBytes(value)));
+    }
+
+    public void remove(K key) {
+        cache.remove(key);
+    }
+
+    @Override
+    public int sizeBytes() {
+        return cache.size();
+    }
+
+    @Override
+    public synchronized void setMaxBytes(int maxBytes) {
+        this.maxBytes = maxBytes;
+        cache.trimToSize(maxBytes);
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.kriti.newsapp;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static com.example.kriti.newsapp.NewsAppActivity.LOG_TAG;
+
+/**
+ * An {@link MemoryBudget} owns the heap budget shared by all in-memory caches of the app.
+ *
+ * The budget is a fixed fraction of the device memory class. Caches register with a priority
+ * and a weight; each one gets a share of the budget proportional to its weight. When the system
+ * reports memory pressure through onTrimMemory or onLowMemory, the caches are shrunk starting
+ * with the lowest priority, so the ones backing what the user is looking at go last.
+ */
+final class MemoryBudget implements ComponentCallbacks2 {
+
+    /**
+     * A cache whose size is controlled by the {@link MemoryBudget}.
+     */
+    interface Cache {
+
+        /**
+         * Returns the approximate number of bytes currently held.
+         */
+        int sizeBytes();
+
+        /**
+         * Sets the most bytes the cache may hold from now on, evicting entries if needed.
+         */
+        void setMaxBytes(int maxBytes);
+    }
+
+    /** Content that is on screen now, e.g. the current results. Trimmed last. */
+    static final int PRIORITY_VISIBLE = 2;
+
+    /** Content the user is likely to need next, e.g. article bodies. */
+    static final int PRIORITY_NEXT = 1;
+
+    /** Content that is cheap to rebuild, e.g. text layouts or prefetched pages. Trimmed first. */
+    static final int PRIORITY_SPECULATIVE = 0;
+
+    /** Fraction of the memory class the caches may use together, as the platform docs suggest. */
+    private static final int BUDGET_DIVISOR = 8;
+
+    private static MemoryBudget sInstance;
+
+    private final int budgetBytes;
+    private final List<Entry> entries = new ArrayList<>();
+    private int totalWeight;
+
+    /**
+     * Returns the app-wide {@link MemoryBudget}, creating it and registering it for memory
+     * callbacks on first use.
+     */
+    static synchronized MemoryBudget get(Context context) {
+        if (sInstance == null) {
+            Context appContext = context.getApplicationContext();
+            ActivityManager activityManager = (ActivityManager)
+                    appContext.getSystemService(Context.ACTIVITY_SERVICE);
+            assert activityManager != null;
+            int memoryClassBytes = activityManager.getMemoryClass() * 1024 * 1024;
+            sInstance = new MemoryBudget(memoryClassBytes / BUDGET_DIVISOR);
+            appContext.registerComponentCallbacks(sInstance);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    MemoryBudget(int budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Register a cache and rebalance the budget between all registered caches.
+     *
+     * @param cache is the cache to control
+     * @param priority is one of the PRIORITY_ constants
+     * @param weight is the relative share of the budget this cache should get
+     */
+    synchronized void register(Cache cache, int priority, int weight) {
+        entries.add(new Entry(cache, priority, weight));
+        totalWeight += weight;
+        // Highest priority first, so those caches are handed their share first in rebalance.
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                return b.priority - a.priority;
+            }
+        });
+        rebalance(budgetBytes);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        Log.i(LOG_TAG, "Trimming caches at memory level " + level + ", holding " + heldBytes() + " bytes");
+        if (level >= TRIM_MEMORY_COMPLETE) {
+            // Next in line to be killed: drop everything.
+            rebalance(0);
+        } else if (level >= TRIM_MEMORY_MODERATE) {
+            rebalance(budgetBytes / 4);
+        } else if (level >= TRIM_MEMORY_BACKGROUND) {
+            rebalance(budgetBytes / 2);
+        } else if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            // Nothing is on screen, so speculative content isn't worth keeping.
+            rebalance(budgetBytes - speculativeShareBytes());
+        } else if (level >= TRIM_MEMORY_RUNNING_CRITICAL) {
+            rebalance(budgetBytes / 4);
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            rebalance(budgetBytes / 2);
+        } else if (level >= TRIM_MEMORY_RUNNING_MODERATE) {
+            rebalance(budgetBytes * 3 / 4);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        rebalance(0);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    /**
+     * Restore the full budget once the app is back in use after being trimmed.
+     */
+    void restore() {
+        rebalance(budgetBytes);
+    }
+
+    /**
+     * Give every cache at most its weighted share, handing out the available bytes in priority
+     * order so that lower priority caches are the ones shrunk or dropped.
+     */
+    private synchronized void rebalance(int availableBytes) {
+        int remaining = availableBytes;
+        for (Entry entry : entries) {
+            int allowance = Math.min(shareBytes(entry), remaining);
+            entry.cache.setMaxBytes(allowance);
+            remaining -= allowance;
+        }
+    }
+
+    private int shareBytes(Entry entry) {
+        return (int) ((long) budgetBytes * entry.weight / totalWeight);
+    }
+
+    private synchronized int heldBytes() {
+        int bytes = 0;
+        for (Entry entry : entries) {
+            bytes += entry.cache.sizeBytes();
+        }
+        return bytes;
+    }
+
+    private synchronized int speculativeShareBytes() {
+        int bytes = 0;
+        for (Entry entry : entries) {
+            if (entry.priority <= PRIORITY_SPECULATIVE) {
+                bytes += shareBytes(entry);
+            }
+        }
+        return bytes;
+    }
+
+    private static class Entry {
+        final Cache cache;
+        final int priority;
+        final int weight;
+
+        Entry(Cache cache, int priority, int weight) {
+            this.cache = cache;
+            this.priority = priority;
+            this.weight = weight;
+        }
+    }
+}
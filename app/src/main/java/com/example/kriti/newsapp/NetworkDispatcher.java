@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.kriti.newsapp;
+
+import android.support.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An {@link NetworkDispatcher} decides which network request may go next, so that what the
+ * user is waiting for never queues behind bulk background traffic.
+ *
+ * Every request takes a {@link Slot} before it opens a connection and releases it when done.
+ * Each priority class has its own concurrency limit, and no background request starts while
+ * a visible one is running or waiting. Waiting requests can carry the list position they are
+ * for; they are ordered by distance from the visible rows, and treated as visible while their
+ * row is on screen, so pending work is reordered as the user scrolls.
+ *
+ * acquire blocks, so it must only be called from background threads.
+ */
+final class NetworkDispatcher {
+
+    /** Content the user is looking at or waiting for, e.g. a refresh or a search. */
+    static final int PRIORITY_VISIBLE = 0;
+
+    /** Content the user is likely to need next, e.g. the next page. */
+    static final int PRIORITY_NEXT = 1;
+
+    /** Speculative or bulk work, e.g. polling or archive backfill. */
+    static final int PRIORITY_BACKGROUND = 2;
+
+    /** Position of a request that isn't for a particular row of the list. */
+    static final int NO_POSITION = -1;
+
+    /** Most requests of each priority class running at the same time. */
+    private static final int[] MAX_RUNNING = {4, 2, 2};
+
+    private static NetworkDispatcher sInstance;
+
+    private final int[] running = new int[MAX_RUNNING.length];
+    private final List<Slot> waiting = new ArrayList<>();
+    private long nextSequence;
+    private int firstVisible;
+    private int lastVisible = -1;
+
+    /**
+     * Permission to run one request. Must be released exactly once.
+     */
+    final class Slot {
+        private final int priority;
+        private final int position;
+        private final long sequence;
+        private boolean granted;
+        private boolean released;
+        private int grantedClass;
+
+        private Slot(int priority, int position, long sequence) {
+            this.priority = priority;
+            this.position = position;
+            this.sequence = sequence;
+        }
+
+        /**
+         * Release the slot so the next request can run.
+         */
+        void release() {
+            synchronized (NetworkDispatcher.this) {
+                if (!released) {
+                    released = true;
+                    running[grantedClass]--;
+                    dispatch();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the app-wide {@link NetworkDispatcher}.
+     */
+    static synchronized NetworkDispatcher get() {
+        if (sInstance == null) {
+            sInstance = new NetworkDispatcher();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    NetworkDispatcher() {
+    }
+
+    /**
+     * Returns the most requests of the given priority that run at the same time. Work that is
+     * split over more threads than this only has the extra threads waiting for a slot.
+     */
+    static int maxRunning(int priority) {
+        return MAX_RUNNING[priority];
+    }
+
+    /**
+     * Wait until a request of the given priority may run.
+     *
+     * @param priority is one of the PRIORITY_ constants
+     * @param position is the list position the request is for, or {@link #NO_POSITION}
+     * @return the slot to release when the request is done
+     * @throws InterruptedException if the thread is interrupted while waiting, e.g. because the
+     * request was cancelled
+     */
+    synchronized Slot acquire(int priority, int position) throws InterruptedException {
+        Slot slot = new Slot(priority, position, nextSequence++);
+        waiting.add(slot);
+        dispatch();
+        try {
+            while (!slot.granted) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            if (slot.granted) {
+                // Granted just as we were interrupted, so hand it back.
+                slot.release();
+            } else {
+                waiting.remove(slot);
+                dispatch();
+            }
+            throw e;
+        }
+        return slot;
+    }
+
+    /**
+     * Wait until a request of the given priority, not tied to a list position, may run.
+     */
+    Slot acquire(int priority) throws InterruptedException {
+        return acquire(priority, NO_POSITION);
+    }
+
+    /**
+     * Tell the dispatcher which list rows are on screen, so waiting requests are reordered.
+     * To be called from the list's scroll listener once requests are made for list positions.
+     */
+    synchronized void setVisibleRange(int first, int last) {
+        if (first == firstVisible && last == lastVisible) {
+            return;
+        }
+        firstVisible = first;
+        lastVisible = last;
+        dispatch();
+    }
+
+    /**
+     * Returns the number of requests waiting for a slot.
+     */
+    @VisibleForTesting
+    synchronized int waitingCount() {
+        return waiting.size();
+    }
+
+    /**
+     * Start as many waiting requests as the limits allow, most urgent first.
+     */
+    private void dispatch() {
+        if (waiting.isEmpty()) {
+            return;
+        }
+        Collections.sort(waiting, new Comparator<Slot>() {
+            @Override
+            public int compare(Slot a, Slot b) {
+                int byClass = effectiveClass(a) - effectiveClass(b);
+                if (byClass != 0) {
+                    return byClass;
+                }
+                long byDistance = distance(a) - distance(b);
+                if (byDistance != 0) {
+                    return byDistance < 0 ? -1 : 1;
+                }
+                return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+            }
+        });
+
+        boolean granted = false;
+        boolean visibleWaiting = false;
+        for (int i = 0; i < waiting.size(); i++) {
+            Slot slot = waiting.get(i);
+            int slotClass = effectiveClass(slot);
+            boolean foregroundBusy = running[PRIORITY_VISIBLE] > 0 || visibleWaiting;
+            if (running[slotClass] < MAX_RUNNING[slotClass]
+                    && !(slotClass == PRIORITY_BACKGROUND && foregroundBusy)) {
+                slot.granted = true;
+                slot.grantedClass = slotClass;
+                running[slotClass]++;
+                waiting.remove(i--);
+                granted = true;
+            } else if (slotClass == PRIORITY_VISIBLE) {
+                visibleWaiting = true;
+            }
+        }
+        if (granted) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * A request whose row is on screen is as urgent as any other visible request.
+     */
+    private int effectiveClass(Slot slot) {
+        if (slot.position != NO_POSITION && slot.position >= firstVisible && slot.position <= lastVisible) {
+            return PRIORITY_VISIBLE;
+        }
+        return slot.priority;
+    }
+
+    /**
+     * Returns how many rows away from the screen the request's row is, 0 if it has none.
+     */
+    private long distance(Slot slot) {
+        if (slot.position == NO_POSITION) {
+            return 0;
+        }
+        if (slot.position < firstVisible) {
+            return firstVisible - slot.position;
+        }
+        return Math.max(0, slot.position - lastVisible);
+    }
+}
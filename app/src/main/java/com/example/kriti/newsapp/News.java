@@ -26,6 +26,7 @@ class News {
     private final String mGenre;
     private final String mUrl;
     private final Integer mNewsNumber;
+    private final long mPublishedMillis;
 
 
     /**
@@ -37,15 +38,27 @@ class News {
      * @param genre is the genre of the news
      * @param url is the website URL of the news.
      * @param newsnumber is the number of the news
+     * @param publishedMillis is the publication time of the news in milliseconds since the epoch,
+     *                        or 0 if it is unknown
      *
      */
-    public News(String headline, String author, String date, String genre, String url, Integer newsnumber) {
+    public News(String headline, String author, String date, String genre, String url, Integer newsnumber,
+                long publishedMillis) {
         mHeadline = headline;
         mAuthor = author;
         mDate = date;
         mGenre = genre;
         mUrl = url;
         mNewsNumber = newsnumber;
+        mPublishedMillis = publishedMillis;
+    }
+
+    /**
+     * Returns a copy of this news with a different news number, used when the list is renumbered
+     * after new stories are merged in at the top.
+     */
+    public News withNewsNumber(Integer newsnumber) {
+        return new News(mHeadline, mAuthor, mDate, mGenre, mUrl, newsnumber, mPublishedMillis);
     }
 
     /**
@@ -89,4 +102,23 @@ class News {
     public Integer getNewsNumber() {
         return mNewsNumber;
     }
+
+    /**
+     * Returns the publication time of the news in milliseconds since the epoch, or 0 if unknown.
+     */
+    public long getPublishedMillis() {
+        return mPublishedMillis;
+    }
+
+    /**
+     * Returns roughly how many bytes this news takes on the heap, for sizing caches.
+     */
+    public int estimateSizeBytes() {
+        // Object header and fields, plus each String's own object and char array.
+        return 48 + sizeOf(mHeadline) + sizeOf(mAuthor) + sizeOf(mDate) + sizeOf(mGenre) + sizeOf(mUrl);
+    }
+
+    private static int sizeOf(String value) {
+        return value == null ? 0 : 40 + 2 * value.length();
+    }
 }
@@ -23,18 +23,28 @@ import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v4.widget.SwipeRefreshLayout;
 import android.support.v7.app.AppCompatActivity;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.widget.AdapterView;
+import android.widget.EditText;
 import android.widget.ListView;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class NewsAppActivity extends AppCompatActivity implements
-        LoaderManager.LoaderCallbacks<List<News>>, SwipeRefreshLayout.OnRefreshListener {
+        LoaderManager.LoaderCallbacks<List<News>>, SwipeRefreshLayout.OnRefreshListener,
+        NewsPoller.Listener, NewsSearcher.Listener {
 
     public static final String LOG_TAG = NewsAppActivity.class.getName();
 
@@ -44,6 +54,11 @@ public class NewsAppActivity extends AppCompatActivity implements
      */
     private static int NEWS_LOADER_ID = 0;
 
+    /**
+     * Loader argument: whether to show the cached results while loading
+     */
+    private static final String ARG_SHOW_CACHED = "show_cached";
+
     /**
      * Adapter for the list of news
      */
@@ -51,6 +66,49 @@ public class NewsAppActivity extends AppCompatActivity implements
 
     private SwipeRefreshLayout swipeRefresh;
 
+    private ListView newsListView;
+
+    /**
+     * Polls for new stories while the activity is visible
+     */
+    private NewsPoller newsPoller;
+
+    /**
+     * New stories found by the poller, held back until the user taps the "N new stories" button
+     * so the list doesn't shift under their finger
+     */
+    private final List<News> pendingNews = new ArrayList<>();
+
+    private TextView newStoriesButton;
+
+    /**
+     * Runs searches as the user types in the search box
+     */
+    private NewsSearcher newsSearcher;
+
+    /**
+     * Whether the list shows search results rather than the default feed
+     */
+    private boolean searching;
+
+    /**
+     * Number of days of the archive saved by the backfill menu action
+     */
+    private static final int BACKFILL_DAYS = 7;
+
+    /**
+     * Most archive days fetched at the same time by a backfill. Its pages are background requests,
+     * so more days than the dispatcher lets run at once would only wait for a slot
+     */
+    private static final int BACKFILL_PARALLELISM =
+            NetworkDispatcher.maxRunning(NetworkDispatcher.PRIORITY_BACKGROUND);
+
+    /**
+     * The running archive backfill, or null. Static so it survives configuration changes, which
+     * recreate the activity.
+     */
+    private static ArchiveBackfill sArchiveBackfill;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -59,7 +117,7 @@ public class NewsAppActivity extends AppCompatActivity implements
         swipeRefresh.setOnRefreshListener(this);
 
         // Find a reference to the {@link ListView} in the layout
-        ListView newsListView = findViewById(R.id.list);
+        newsListView = findViewById(R.id.list);
 
         // Create a new adapter that takes an empty list of books as input
         newsAdapter = new NewsAdapter(this, new ArrayList<News>());
@@ -88,6 +146,32 @@ public class NewsAppActivity extends AppCompatActivity implements
             }
         });
 
+        newsPoller = new NewsPoller(this);
+        newStoriesButton = findViewById(R.id.new_stories);
+        newStoriesButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                showPendingNews();
+            }
+        });
+
+        newsSearcher = new NewsSearcher(this, this);
+        EditText searchBox = findViewById(R.id.search);
+        searchBox.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence text, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence text, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable text) {
+                onSearchTextChanged(text.toString());
+            }
+        });
+
         if(NEWS_LOADER_ID == 0) {
             View loadingIndicator = findViewById(R.id.loading_indicator);
             loadingIndicator.setVisibility(View.VISIBLE);
@@ -112,7 +196,9 @@ public class NewsAppActivity extends AppCompatActivity implements
             // Initialize the loader. Pass in the int ID constant defined above and pass in null for
             // the bundle. Pass in this activity for the LoaderCallbacks parameter (which is valid
             // because this activity implements the LoaderCallbacks interface).
-            loaderManager.initLoader(NEWS_LOADER_ID, null, NewsAppActivity.this);
+            Bundle args = new Bundle();
+            args.putBoolean(ARG_SHOW_CACHED, true);
+            loaderManager.initLoader(NEWS_LOADER_ID, args, NewsAppActivity.this);
         } else {
             Toast.makeText(NewsAppActivity.this, "Internet connection not available", Toast.LENGTH_LONG).show();
 
@@ -121,11 +207,101 @@ public class NewsAppActivity extends AppCompatActivity implements
         }
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // Caches may regrow to their full share now the app is in use again
+        MemoryBudget.get(this).restore();
+        newsPoller.start();
+    }
+
+    @Override
+    protected void onStop() {
+        // Don't poll while the activity is not visible
+        newsPoller.stop();
+        super.onStop();
+    }
+
+    @Override
+    protected void onDestroy() {
+        newsPoller.shutdown();
+        newsSearcher.shutdown();
+        if (sArchiveBackfill != null && !isChangingConfigurations()) {
+            // The user has left. Stored pages are checkpointed, so the next backfill resumes
+            sArchiveBackfill.cancel();
+        }
+        super.onDestroy();
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.main, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.action_backfill) {
+            startBackfill();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Save the last few days of the default feed for offline reading, on a background thread.
+     * The thread only holds on to the application context, so it isn't tied to this activity
+     * instance and keeps running when the activity is recreated.
+     */
+    private void startBackfill() {
+        if (sArchiveBackfill != null) {
+            return;
+        }
+        final Context appContext = getApplicationContext();
+        final ArchiveBackfill backfill = new ArchiveBackfill(NewsDbHelper.get(appContext),
+                QueryUtils.DEFAULT_QUERY, BACKFILL_PARALLELISM);
+        sArchiveBackfill = backfill;
+        Toast.makeText(this, R.string.backfill_started, Toast.LENGTH_SHORT).show();
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long now = System.currentTimeMillis();
+                long stored = 0;
+                try {
+                    stored = backfill.run(now - (BACKFILL_DAYS - 1) * 24L * 60 * 60 * 1000, now);
+                } catch (InterruptedException e) {
+                    Log.e(LOG_TAG, "Backfill interrupted", e);
+                }
+                final long storedNews = stored;
+                final boolean cancelled = backfill.isCancelled();
+                final boolean complete = backfill.isComplete();
+                new Handler(Looper.getMainLooper()).post(new Runnable() {
+                    @Override
+                    public void run() {
+                        sArchiveBackfill = null;
+                        int message;
+                        if (cancelled) {
+                            message = R.string.backfill_cancelled;
+                        } else if (!complete) {
+                            message = R.string.backfill_incomplete;
+                        } else {
+                            message = R.string.backfill_finished;
+                        }
+                        Toast.makeText(appContext, appContext.getString(message, storedNews),
+                                Toast.LENGTH_LONG).show();
+                    }
+                });
+            }
+        }, "archive-backfill").start();
+    }
 
     @Override
     public Loader<List<News>> onCreateLoader(int i, Bundle bundle) {
-        // Create a new loader for the given URL
-        return new NewsLoader(this);
+        // Create a new loader for the given URL. Only the first load shows cached results, so a
+        // refresh keeps its spinner and new stories until fresh results arrive
+        boolean showCached = bundle != null && bundle.getBoolean(ARG_SHOW_CACHED);
+        return new NewsLoader(this, showCached);
     }
 
     @Override
@@ -146,6 +322,11 @@ public class NewsAppActivity extends AppCompatActivity implements
             newsAdapter.setNotifyOnChange(true);
             newsAdapter.addAll(newsData);
         }
+
+        // A full load already contains anything the poller had buffered
+        pendingNews.clear();
+        newStoriesButton.setVisibility(View.GONE);
+        newsPoller.setNewestPublished(newsData);
     }
 
     @Override
@@ -156,8 +337,100 @@ public class NewsAppActivity extends AppCompatActivity implements
 
     @Override
     public void onRefresh() {
+        if (searching) {
+            newsSearcher.refresh();
+            return;
+        }
         NEWS_LOADER_ID++;
         getLoaderManager().restartLoader(NEWS_LOADER_ID, null, this);
     }
 
+    /**
+     * Switch between searching and the default feed as the search text changes.
+     */
+    private void onSearchTextChanged(String text) {
+        if (text.trim().isEmpty()) {
+            if (searching) {
+                // Back to the default feed
+                searching = false;
+                newsSearcher.cancel();
+                newsPoller.setFeed(QueryUtils.DEFAULT_QUERY, false);
+                NEWS_LOADER_ID++;
+                getLoaderManager().restartLoader(NEWS_LOADER_ID, null, this);
+            }
+            return;
+        }
+
+        if (!searching) {
+            // Stop the default feed's loader so it can't overwrite the search results
+            searching = true;
+            getLoaderManager().destroyLoader(NEWS_LOADER_ID);
+        }
+        newsSearcher.search(text);
+    }
+
+    @Override
+    public void onSearchResults(String query, List<News> news, boolean replace) {
+        View loadingIndicator = findViewById(R.id.loading_indicator);
+        loadingIndicator.setVisibility(View.GONE);
+
+        if (replace) {
+            // Stories buffered by the poller belong to the previous query
+            pendingNews.clear();
+            newStoriesButton.setVisibility(View.GONE);
+            newsPoller.setFeed(query, true);
+
+            newsAdapter.setNotifyOnChange(false);
+            newsAdapter.clear();
+            newsAdapter.setNotifyOnChange(true);
+        }
+        // Each batch is added as soon as it is parsed, so the first results show up early
+        newsAdapter.addAll(news);
+        if (replace) {
+            newsListView.setSelection(0);
+        }
+    }
+
+    @Override
+    public void onSearchFinished(String query) {
+        swipeRefresh.setRefreshing(false);
+        List<News> shown = new ArrayList<>(newsAdapter.getCount());
+        for (int i = 0; i < newsAdapter.getCount(); i++) {
+            shown.add(newsAdapter.getItem(i));
+        }
+        newsPoller.setNewestPublished(shown);
+    }
+
+    @Override
+    public void onNewStories(List<News> newStories) {
+        // Buffer the new stories behind the button instead of re-laying out the list
+        pendingNews.addAll(0, newStories);
+        int count = pendingNews.size();
+        newStoriesButton.setText(getResources().getQuantityString(R.plurals.new_stories, count, count));
+        newStoriesButton.setVisibility(View.VISIBLE);
+    }
+
+    /**
+     * Merge the buffered new stories in at the top of the list, renumber it and scroll to the top.
+     */
+    private void showPendingNews() {
+        List<News> merged = new ArrayList<>(pendingNews.size() + newsAdapter.getCount());
+        merged.addAll(pendingNews);
+        for (int i = 0; i < newsAdapter.getCount(); i++) {
+            merged.add(newsAdapter.getItem(i));
+        }
+        for (int i = 0; i < merged.size(); i++) {
+            merged.set(i, merged.get(i).withNewsNumber(i + 1));
+        }
+
+        newsAdapter.setNotifyOnChange(false);
+        newsAdapter.clear();
+        newsAdapter.setNotifyOnChange(true);
+        newsAdapter.addAll(merged);
+
+        pendingNews.clear();
+        newStoriesButton.setVisibility(View.GONE);
+        newsListView.setSelection(0);
+    }
+
 }
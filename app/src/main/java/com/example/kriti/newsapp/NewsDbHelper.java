@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.kriti.newsapp;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Local storage for archived news and for the progress of archive backfills.
+ */
+class NewsDbHelper extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "news.db";
+    private static final int DATABASE_VERSION = 1;
+
+    static final String TABLE_NEWS = "news";
+    private static final String TABLE_BACKFILL = "backfill_windows";
+
+    private static final String SQL_CREATE_NEWS = "CREATE TABLE " + TABLE_NEWS + " ("
+            + "url TEXT PRIMARY KEY, "
+            + "headline TEXT, "
+            + "author TEXT, "
+            + "date TEXT, "
+            + "genre TEXT, "
+            + "published INTEGER)";
+
+    private static final String SQL_CREATE_NEWS_PUBLISHED_INDEX = "CREATE INDEX news_published ON "
+            + TABLE_NEWS + " (published)";
+
+    /**
+     * One row per query and day of a backfill. next_page is the first page not yet stored, and
+     * pages is the page count the server reported, or 0 if it has to be asked again because no
+     * page has been fetched yet or the day isn't over.
+     */
+    private static final String SQL_CREATE_BACKFILL = "CREATE TABLE " + TABLE_BACKFILL + " ("
+            + "query TEXT NOT NULL, "
+            + "day TEXT NOT NULL, "
+            + "next_page INTEGER NOT NULL DEFAULT 1, "
+            + "pages INTEGER NOT NULL DEFAULT 0, "
+            + "PRIMARY KEY (query, day))";
+
+    /** Existing rows are left alone, so a resumed backfill doesn't duplicate anything. */
+    private static final String SQL_INSERT_NEWS = "INSERT OR IGNORE INTO " + TABLE_NEWS
+            + " (url, headline, author, date, genre, published) VALUES (?, ?, ?, ?, ?, ?)";
+
+    /**
+     * A backfill window read back from the checkpoint table.
+     */
+    static class Window {
+        final String day;
+        final int nextPage;
+        final int pages;
+
+        Window(String day, int nextPage, int pages) {
+            this.day = day;
+            this.nextPage = nextPage;
+            this.pages = pages;
+        }
+    }
+
+    private static NewsDbHelper sInstance;
+
+    /**
+     * Returns the app-wide {@link NewsDbHelper}, so every backfill shares one connection.
+     */
+    static synchronized NewsDbHelper get(Context context) {
+        if (sInstance == null) {
+            sInstance = new NewsDbHelper(context.getApplicationContext(), DATABASE_NAME);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    NewsDbHelper(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL(SQL_CREATE_NEWS);
+        db.execSQL(SQL_CREATE_NEWS_PUBLISHED_INDEX);
+        db.execSQL(SQL_CREATE_BACKFILL);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+    }
+
+    /**
+     * Insert the news in a single transaction, reusing one compiled statement for every row.
+     *
+     * @return the number of news inserted, not counting ones that were already stored
+     */
+    int insertNews(List<News> newsList) {
+        int inserted = 0;
+        SQLiteDatabase db = getWritableDatabase();
+        SQLiteStatement statement = db.compileStatement(SQL_INSERT_NEWS);
+        db.beginTransaction();
+        try {
+            for (News news : newsList) {
+                statement.clearBindings();
+                bindStringOrNull(statement, 1, news.getUrl());
+                bindStringOrNull(statement, 2, news.getHeadline());
+                bindStringOrNull(statement, 3, news.getAuthor());
+                bindStringOrNull(statement, 4, news.getDate());
+                bindStringOrNull(statement, 5, news.getGenre());
+                statement.bindLong(6, news.getPublishedMillis());
+                if (statement.executeInsert() != -1) {
+                    inserted++;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            statement.close();
+        }
+        return inserted;
+    }
+
+    /**
+     * Returns the number of stored news.
+     */
+    long countNews() {
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE_NEWS);
+    }
+
+    /**
+     * Add checkpoint rows for the given days of a backfill. Days that already have one keep
+     * their progress.
+     */
+    void addWindows(String query, List<String> days) {
+        SQLiteDatabase db = getWritableDatabase();
+        SQLiteStatement statement = db.compileStatement("INSERT OR IGNORE INTO " + TABLE_BACKFILL
+                + " (query, day) VALUES (?, ?)");
+        db.beginTransaction();
+        try {
+            for (String day : days) {
+                statement.bindString(1, query);
+                statement.bindString(2, day);
+                statement.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            statement.close();
+        }
+    }
+
+    /**
+     * Returns the windows of a backfill between the given days that still have pages to fetch.
+     */
+    List<Window> pendingWindows(String query, String firstDay, String lastDay) {
+        List<Window> windows = new ArrayList<>();
+        Cursor cursor = getReadableDatabase().rawQuery("SELECT day, next_page, pages FROM "
+                + TABLE_BACKFILL + " WHERE query = ? AND day BETWEEN ? AND ?"
+                + " AND (pages = 0 OR next_page <= pages) ORDER BY day",
+                new String[]{query, firstDay, lastDay});
+        try {
+            while (cursor.moveToNext()) {
+                windows.add(new Window(cursor.getString(0), cursor.getInt(1), cursor.getInt(2)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return windows;
+    }
+
+    /**
+     * Record that all pages of a window before nextPage are stored.
+     */
+    void checkpoint(String query, String day, int nextPage, int pages) {
+        SQLiteStatement statement = getWritableDatabase().compileStatement("UPDATE " + TABLE_BACKFILL
+                + " SET next_page = ?, pages = ? WHERE query = ? AND day = ?");
+        try {
+            statement.bindLong(1, nextPage);
+            statement.bindLong(2, pages);
+            statement.bindString(3, query);
+            statement.bindString(4, day);
+            statement.executeUpdateDelete();
+        } finally {
+            statement.close();
+        }
+    }
+
+    private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+}
@@ -28,18 +28,59 @@ import java.util.List;
 class NewsLoader extends AsyncTaskLoader<List<News>> {
 
     /**
-     * Constructs a new {@link NewsLoader}.
+     * Results cache shared by all loaders, so a new loader can show the last results at once
+     */
+    private static ResultCache sResultCache;
+
+    /**
+     * Whether this loader shows the cached results while it fetches
+     */
+    private final boolean mShowCached;
+
+    /**
+     * Whether this loader has successfully fetched from the network yet
+     */
+    private volatile boolean mFetched;
+
+    /**
+     * Constructs a new {@link NewsLoader} that doesn't show cached results.
      *
      * @param context of the activity
      *
      */
     public NewsLoader(Context context) {
+        this(context, false);
+    }
+
+    /**
+     * Constructs a new {@link NewsLoader}.
+     *
+     * @param context of the activity
+     * @param showCached is true to deliver the last results at once, before fetching. Only for
+     *                   the first load of the activity: a refresh has to wait for fresh results
+     */
+    public NewsLoader(Context context, boolean showCached) {
         super(context);
+        mShowCached = showCached;
+        synchronized (NewsLoader.class) {
+            if (sResultCache == null) {
+                sResultCache = new ResultCache(MemoryBudget.get(context));
+            }
+        }
     }
 
     @Override
     protected void onStartLoading() {
-        forceLoad();
+        if (mShowCached && !mFetched) {
+            // Show the cached results straight away while the fresh ones are fetched.
+            List<News> cached = sResultCache.get(QueryUtils.DEFAULT_QUERY);
+            if (cached != null) {
+                deliverResult(cached);
+            }
+        }
+        if (!mFetched || takeContentChanged()) {
+            forceLoad();
+        }
     }
 
     /**
@@ -49,10 +90,40 @@ class NewsLoader extends AsyncTaskLoader<List<News>> {
     public List<News> loadInBackground() {
         List<News> newsList = null;
         try {
-            newsList = QueryUtils.fetchNewsData();
+            // The feed is what the user is waiting for, so it goes ahead of background traffic.
+            NetworkDispatcher.Slot slot = NetworkDispatcher.get().acquire(NetworkDispatcher.PRIORITY_VISIBLE);
+            try {
+                newsList = QueryUtils.fetchNewsData();
+            } finally {
+                slot.release();
+            }
+            if (newsList != null) {
+                // A failed load is retried on the next onStart.
+                mFetched = true;
+                sResultCache.put(QueryUtils.DEFAULT_QUERY, newsList);
+            }
         }  catch (Exception e){
             Log.e("QueryUtils", "Error News Loader LoadInBackground: ", e);
         }
         return newsList;
     }
+
+    /**
+     * Parsed results by feed. This is what is on screen, so it is the last cache to be trimmed.
+     */
+    private static class ResultCache extends BudgetedLruCache<String, List<News>> {
+
+        ResultCache(MemoryBudget budget) {
+            super(budget, MemoryBudget.PRIORITY_VISIBLE, 1);
+        }
+
+        @Override
+        protected int sizeOfBytes(List<News> newsList) {
+            int bytes = 0;
+            for (News news : newsList) {
+                bytes += news.estimateSizeBytes();
+            }
+            return bytes;
+        }
+    }
 }
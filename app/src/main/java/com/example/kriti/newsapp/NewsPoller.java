@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.kriti.newsapp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * An {@link NewsPoller} checks for new stories while the activity is in the foreground.
+ *
+ * It learns how often each feed publishes and polls at roughly that rate, only asks for news
+ * newer than the newest one already held, and hands anything new to a {@link Listener} on the
+ * main thread. It is started in onStart and stopped in onStop so nothing is polled while the
+ * activity is not visible.
+ */
+class NewsPoller {
+
+    /**
+     * Receives new stories on the main thread.
+     */
+    interface Listener {
+        void onNewStories(List<News> newStories);
+    }
+
+    /** Never poll more often than this, however busy the feed is. */
+    private static final long MIN_INTERVAL_MILLIS = 60 * 1000;
+
+    /** Never wait longer than this between polls while visible. */
+    private static final long MAX_INTERVAL_MILLIS = 15 * 60 * 1000;
+
+    /** Interval used until the feed has published anything we could learn from. */
+    private static final long INITIAL_INTERVAL_MILLIS = 2 * 60 * 1000;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Map<String, PublishRate> publishRates = new HashMap<>();
+    private final Listener listener;
+
+    private String feed;
+    private boolean searchFeed;
+    private long newestPublishedMillis;
+    private boolean running;
+    private boolean pollInFlight;
+
+    private final Runnable pollRunnable = new Runnable() {
+        @Override
+        public void run() {
+            poll();
+        }
+    };
+
+    /**
+     * Constructs a new {@link NewsPoller} for the default feed.
+     *
+     * @param listener is notified on the main thread when new stories arrive
+     */
+    public NewsPoller(Listener listener) {
+        this.feed = QueryUtils.DEFAULT_QUERY;
+        this.listener = listener;
+    }
+
+    /**
+     * Start polling, if we know what the newest story held is. Called from onStart.
+     */
+    public void start() {
+        running = true;
+        schedule();
+    }
+
+    /**
+     * Stop polling. Called from onStop.
+     */
+    public void stop() {
+        running = false;
+        mainHandler.removeCallbacks(pollRunnable);
+    }
+
+    /**
+     * Release the background thread. Called from onDestroy.
+     */
+    public void shutdown() {
+        stop();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Switch to a different feed, e.g. when the user searches. The publishing rate learned for
+     * the default feed is kept; the one for a previous search is dropped, since every partial
+     * query typed would otherwise leave an entry behind.
+     *
+     * @param feed is the search query of the feed
+     * @param search is true for a search typed by the user, false for the default feed
+     */
+    public void setFeed(String feed, boolean search) {
+        this.feed = feed;
+        this.searchFeed = search;
+        publishRates.keySet().retainAll(Arrays.asList(QueryUtils.DEFAULT_QUERY, feed));
+        newestPublishedMillis = 0;
+        mainHandler.removeCallbacks(pollRunnable);
+    }
+
+    /**
+     * Record the newest story now held, after a full load or after new stories were shown.
+     * Polling only asks for stories newer than this.
+     */
+    public void setNewestPublished(List<News> newsList) {
+        long newest = newestOf(newsList);
+        if (newest > newestPublishedMillis) {
+            newestPublishedMillis = newest;
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        mainHandler.removeCallbacks(pollRunnable);
+        if (running && !pollInFlight && newestPublishedMillis > 0) {
+            mainHandler.postDelayed(pollRunnable, rateFor(feed).nextIntervalMillis());
+        }
+    }
+
+    private void poll() {
+        if (!running || executor.isShutdown()) {
+            return;
+        }
+        pollInFlight = true;
+        final String polledFeed = feed;
+        final boolean polledSearch = searchFeed;
+        final long since = newestPublishedMillis;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<News> newStories = null;
+                try {
+                    // Polling is speculative, so it waits for anything the user is looking at.
+                    NetworkDispatcher.Slot slot = NetworkDispatcher.get().acquire(NetworkDispatcher.PRIORITY_BACKGROUND);
+                    try {
+                        newStories = QueryUtils.fetchNewsSince(polledFeed, polledSearch, since);
+                    } finally {
+                        slot.release();
+                    }
+                } catch (Exception e) {
+                    Log.e(NewsAppActivity.LOG_TAG, "Error polling for new stories: ", e);
+                }
+                final List<News> result = newStories;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPollFinished(polledFeed, polledSearch, since, result);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onPollFinished(String polledFeed, boolean polledSearch, long since, List<News> newStories) {
+        pollInFlight = false;
+        // Drop results for a feed we have since switched away from.
+        if (!polledFeed.equals(feed) || polledSearch != searchFeed) {
+            schedule();
+            return;
+        }
+
+        PublishRate rate = rateFor(polledFeed);
+        if (newStories == null || newStories.isEmpty()) {
+            // A failed request backs off the same way as one that found nothing.
+            rate.recordEmptyPoll();
+        } else {
+            rate.recordNewStories(since, newStories);
+            newestPublishedMillis = Math.max(newestPublishedMillis, newestOf(newStories));
+            listener.onNewStories(newStories);
+        }
+        schedule();
+    }
+
+    private PublishRate rateFor(String feed) {
+        PublishRate rate = publishRates.get(feed);
+        if (rate == null) {
+            rate = new PublishRate();
+            publishRates.put(feed, rate);
+        }
+        return rate;
+    }
+
+    private static long newestOf(List<News> newsList) {
+        long newest = 0;
+        if (newsList != null) {
+            for (News news : newsList) {
+                newest = Math.max(newest, news.getPublishedMillis());
+            }
+        }
+        return newest;
+    }
+
+    /**
+     * Tracks how often a feed publishes, as an exponentially weighted average of the gap
+     * between stories, and turns that into a polling interval.
+     */
+    static class PublishRate {
+
+        /** Weight given to the newest observation in the moving average. */
+        private static final double SMOOTHING = 0.3;
+
+        /** How much the interval grows after each poll that found nothing. */
+        private static final double IDLE_BACKOFF = 1.5;
+
+        private double averageGapMillis;
+        private double backoff = 1;
+
+        /**
+         * Learn from stories published since the previous newest story.
+         */
+        void recordNewStories(long since, List<News> newStories) {
+            long newest = newestOf(newStories);
+            if (since > 0 && newest > since) {
+                double gap = (double) (newest - since) / newStories.size();
+                averageGapMillis = averageGapMillis == 0
+                        ? gap
+                        : SMOOTHING * gap + (1 - SMOOTHING) * averageGapMillis;
+            }
+            backoff = 1;
+        }
+
+        /**
+         * Back off a little further after a poll that found nothing.
+         */
+        void recordEmptyPoll() {
+            backoff = Math.min(backoff * IDLE_BACKOFF, (double) MAX_INTERVAL_MILLIS / MIN_INTERVAL_MILLIS);
+        }
+
+        /**
+         * Returns how long to wait before the next poll: about one expected story's worth of
+         * time, stretched by the idle back-off and kept within the min/max bounds.
+         */
+        long nextIntervalMillis() {
+            double base = averageGapMillis == 0 ? INITIAL_INTERVAL_MILLIS : averageGapMillis;
+            long interval = (long) (base * backoff);
+            return Math.max(MIN_INTERVAL_MILLIS, Math.min(MAX_INTERVAL_MILLIS, interval));
+        }
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.kriti.newsapp;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * An {@link NewsSearcher} runs searches as the user types.
+ *
+ * Keystrokes are debounced, a search for text the user has since changed is cancelled, and
+ * results are cached by query. A query that only adds plain words to a cached, complete search
+ * is answered without a request, by keeping the results whose headlines contain the new words
+ * as whole words. The API also stems words, so this can miss a few results the server would
+ * return; queries with operators, quotes or other punctuation always go to the server. Results
+ * reach the {@link Listener} on the main thread in batches as they are parsed.
+ */
+class NewsSearcher {
+
+    /**
+     * Receives search results on the main thread.
+     */
+    interface Listener {
+
+        /**
+         * Called with each batch of results for the current query.
+         *
+         * @param replace is true for the first batch, which replaces whatever is shown
+         */
+        void onSearchResults(String query, List<News> news, boolean replace);
+
+        /**
+         * Called once all results for the current query have been delivered, or the search failed.
+         */
+        void onSearchFinished(String query);
+    }
+
+    /** How long typing has to pause before a request is sent. */
+    private static final long DEBOUNCE_MILLIS = 300;
+
+    /** Number of parsed results handed to the list at a time. */
+    private static final int BATCH_SIZE = 10;
+
+    /** Search operators. The API only treats them as operators in upper case. */
+    private static final Set<String> OPERATORS = new HashSet<>(Arrays.asList("AND", "OR", "NOT"));
+
+    /** A word as the headline filter sees it: letters and digits only. */
+    private static final String WORD = "[\\p{L}\\p{N}]+";
+
+    /** What separates the words of a headline. */
+    private static final String NON_WORD = "[^\\p{L}\\p{N}]+";
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Not a single thread: a cancelled search may still be stuck connecting and shouldn't hold
+     * up the next one.
+     */
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Listener listener;
+
+    /**
+     * Shared by all searchers, so it is only registered with the memory budget once
+     */
+    private static SearchCache sCache;
+    private final SearchCache cache;
+
+    private String currentQuery;
+    private QueryUtils.Request inFlight;
+
+    private final Runnable debounceRunnable = new Runnable() {
+        @Override
+        public void run() {
+            startRequest(currentQuery);
+        }
+    };
+
+    /**
+     * Constructs a new {@link NewsSearcher}.
+     *
+     * @param context of the activity, used to find the memory budget
+     * @param listener is notified on the main thread as results arrive
+     */
+    public NewsSearcher(Context context, Listener listener) {
+        synchronized (NewsSearcher.class) {
+            if (sCache == null) {
+                sCache = new SearchCache(MemoryBudget.get(context));
+            }
+        }
+        this.cache = sCache;
+        this.listener = listener;
+    }
+
+    /**
+     * Search for the given text. Called on every keystroke.
+     */
+    public void search(String text) {
+        String query = normalize(text);
+        if (query.equals(currentQuery)) {
+            return;
+        }
+        currentQuery = query;
+        mainHandler.removeCallbacks(debounceRunnable);
+        // Whatever is in flight is for text the user has already changed.
+        cancelInFlight();
+
+        SearchResult local = lookup(query);
+        if (local != null) {
+            listener.onSearchResults(query, local.news, true);
+            listener.onSearchFinished(query);
+        } else {
+            mainHandler.postDelayed(debounceRunnable, DEBOUNCE_MILLIS);
+        }
+    }
+
+    /**
+     * Fetch the current query again, bypassing the cache. Called on swipe to refresh.
+     */
+    public void refresh() {
+        if (currentQuery != null) {
+            mainHandler.removeCallbacks(debounceRunnable);
+            cache.remove(currentQuery);
+            startRequest(currentQuery);
+        }
+    }
+
+    /**
+     * Stop searching, e.g. when the search text is cleared.
+     */
+    public void cancel() {
+        currentQuery = null;
+        mainHandler.removeCallbacks(debounceRunnable);
+        cancelInFlight();
+    }
+
+    /**
+     * Release the background threads. Called from onDestroy.
+     */
+    public void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    private void cancelInFlight() {
+        if (inFlight != null) {
+            inFlight.cancel();
+            inFlight = null;
+        }
+    }
+
+    private void startRequest(final String query) {
+        cancelInFlight();
+        final QueryUtils.Request request = new QueryUtils.Request();
+        inFlight = request;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<News> allNews = new ArrayList<>();
+                int total = -1;
+                try {
+                    // The user is waiting on the search, so it goes ahead of background traffic.
+                    NetworkDispatcher.Slot slot = NetworkDispatcher.get().acquire(NetworkDispatcher.PRIORITY_VISIBLE);
+                    try {
+                        if (!request.isCancelled()) {
+                            total = streamResults(query, request, allNews);
+                        }
+                    } finally {
+                        slot.release();
+                    }
+                } catch (InterruptedException e) {
+                    // The searcher is shutting down.
+                    return;
+                }
+
+                if (total >= 0) {
+                    cache.put(query, new SearchResult(allNews, total <= allNews.size()));
+                    if (allNews.isEmpty()) {
+                        // Nothing was streamed, so clear what the previous query left on screen.
+                        deliver(request, new Runnable() {
+                            @Override
+                            public void run() {
+                                listener.onSearchResults(query, allNews, true);
+                            }
+                        });
+                    }
+                }
+                deliver(request, new Runnable() {
+                    @Override
+                    public void run() {
+                        inFlight = null;
+                        listener.onSearchFinished(query);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Run the search on the calling thread, posting each parsed batch to the listener and
+     * collecting all results in allNews.
+     *
+     * @return the total reported by the server, or -1 if the search failed or was cancelled
+     */
+    private int streamResults(final String query, final QueryUtils.Request request, final List<News> allNews) {
+        return QueryUtils.searchNews(query, request, new QueryUtils.NewsStreamListener() {
+            @Override
+            public void onNews(final List<News> batch) {
+                final boolean first = allNews.isEmpty();
+                allNews.addAll(batch);
+                deliver(request, new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onSearchResults(query, batch, first);
+                    }
+                });
+            }
+        }, BATCH_SIZE);
+    }
+
+    /**
+     * Run the given callback on the main thread, unless the request has been cancelled by then.
+     */
+    private void deliver(final QueryUtils.Request request, final Runnable callback) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!request.isCancelled()) {
+                    callback.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the results for the query from the cache, either directly or by filtering a
+     * complete search for fewer of the same words, or null if the query needs a request.
+     */
+    private SearchResult lookup(String query) {
+        SearchResult exact = cache.get(query);
+        if (exact != null) {
+            return exact;
+        }
+
+        // Only plain words can be matched against headlines locally.
+        String[] words = query.split(" ");
+        for (String word : words) {
+            if (OPERATORS.contains(word) || !word.matches(WORD)) {
+                return null;
+            }
+        }
+
+        // Find the longest cached query the new one only adds whole words to.
+        for (int count = words.length - 1; count > 0; count--) {
+            StringBuilder prefix = new StringBuilder(words[0]);
+            for (int i = 1; i < count; i++) {
+                prefix.append(' ').append(words[i]);
+            }
+            SearchResult broader = cache.get(prefix.toString());
+            if (broader != null && broader.complete) {
+                SearchResult filtered = new SearchResult(filter(broader.news, words), true);
+                cache.put(query, filtered);
+                return filtered;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the news whose headlines contain all the given words as whole words, renumbered
+     * from 1.
+     */
+    private static List<News> filter(List<News> newsList, String[] words) {
+        List<String> wanted = Arrays.asList(words);
+        List<News> matches = new ArrayList<>();
+        for (News news : newsList) {
+            String headline = news.getHeadline().toLowerCase(Locale.getDefault());
+            Set<String> headlineWords = new HashSet<>(Arrays.asList(headline.split(NON_WORD)));
+            if (headlineWords.containsAll(wanted)) {
+                matches.add(news.withNewsNumber(matches.size() + 1));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Lower case the words and collapse whitespace, so equivalent queries share a cache entry.
+     * Operators keep their case, since lower case ones are searched for as plain words.
+     */
+    private static String normalize(String text) {
+        StringBuilder query = new StringBuilder();
+        for (String word : text.trim().split("\\s+")) {
+            if (query.length() > 0) {
+                query.append(' ');
+            }
+            query.append(OPERATORS.contains(word) ? word : word.toLowerCase(Locale.getDefault()));
+        }
+        return query.toString();
+    }
+
+    /**
+     * The results of one search and whether they are all the results the server has.
+     */
+    private static class SearchResult {
+        final List<News> news;
+        final boolean complete;
+
+        SearchResult(List<News> news, boolean complete) {
+            this.news = news;
+            this.complete = complete;
+        }
+    }
+
+    /**
+     * Search results by normalized query. Only needed again if the user edits the query back,
+     * so it is trimmed before the visible results.
+     */
+    private static class SearchCache extends BudgetedLruCache<String, SearchResult> {
+
+        SearchCache(MemoryBudget budget) {
+            super(budget, MemoryBudget.PRIORITY_NEXT, 1);
+        }
+
+        @Override
+        protected int sizeOfBytes(SearchResult result) {
+            int bytes = 32;
+            for (News news : result.news) {
+                bytes += news.estimateSizeBytes();
+            }
+            return bytes;
+        }
+    }
+}
@@ -16,7 +16,10 @@
 package com.example.kriti.newsapp;
 
 import android.net.Uri;
+import android.support.annotation.VisibleForTesting;
 import android.text.TextUtils;
+import android.util.JsonReader;
+import android.util.JsonToken;
 import android.util.Log;
 
 import org.json.JSONArray;
@@ -37,6 +40,7 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.TimeZone;
 
 import static com.example.kriti.newsapp.NewsAppActivity.LOG_TAG;
 
@@ -45,6 +49,70 @@ import static com.example.kriti.newsapp.NewsAppActivity.LOG_TAG;
  */
 final class QueryUtils {
 
+    /**
+     * Scheme and host of the Guardian API. Set from the build config, and pointed at a local
+     * stub server by the tests.
+     */
+    private static String sBaseUrl = BuildConfig.GUARDIAN_BASE_URL;
+
+    /**
+     * The query shown when the user hasn't searched for anything.
+     */
+    static final String DEFAULT_QUERY = "apple";
+
+    /**
+     * Number of results asked for when searching. Larger than the default page so a search is
+     * more often complete, which lets refined searches be answered by filtering it locally.
+     */
+    private static final int SEARCH_PAGE_SIZE = 50;
+
+    /**
+     * Number of results asked for per page when polling, so one page usually covers every story
+     * published since the previous poll.
+     */
+    private static final int POLL_PAGE_SIZE = 50;
+
+    /**
+     * Most pages fetched by one poll. Anything older is left for a full refresh.
+     */
+    private static final int MAX_POLL_PAGES = 5;
+
+    /**
+     * Number of results per archive page, the most the API allows.
+     */
+    static final int ARCHIVE_PAGE_SIZE = 200;
+
+    /**
+     * Receives search results in batches while the response is still being parsed.
+     */
+    interface NewsStreamListener {
+        void onNews(List<News> batch);
+    }
+
+    /**
+     * Handle for an in-flight search that can be cancelled from another thread.
+     */
+    static class Request {
+        private volatile boolean mCancelled;
+        private volatile HttpURLConnection mConnection;
+
+        /**
+         * Stop the request: no more batches are delivered and the connection is closed, which
+         * makes the blocked read on the search thread fail straight away.
+         */
+        void cancel() {
+            mCancelled = true;
+            HttpURLConnection connection = mConnection;
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+
+        boolean isCancelled() {
+            return mCancelled;
+        }
+    }
+
     /**
      * Create a private constructor because no one should ever create a {@link QueryUtils} object.
      * This class is only meant to hold static variables and methods, which can be accessed
@@ -54,14 +122,60 @@ final class QueryUtils {
     private QueryUtils() {
     }
 
+    /**
+     * Point all requests at a different Guardian API host, e.g. a local stub server.
+     *
+     * @param baseUrl is the scheme and host to use, such as "http://127.0.0.1:8080"
+     */
+    @VisibleForTesting
+    static void setBaseUrl(String baseUrl) {
+        sBaseUrl = baseUrl;
+    }
+
     /**
      * Query the dataset and return a list of {@link News} objects.
      */
     public static List<News> fetchNewsData() {
+        return fetchNewsData(createUrl(DEFAULT_QUERY, false, null, 1));
+    }
 
-        // Create URL object
-        URL url = createUrl();
+    /**
+     * Query the dataset for news published after the given time and return only the
+     * {@link News} objects that are strictly newer than it. The request is narrowed with the
+     * "from-date" parameter to the second of the newest news held, so the server only sends
+     * what is new. Further pages are fetched while the previous one was full.
+     *
+     * @param query is the search query of the feed being polled
+     * @param search is true if the feed is a search typed by the user, false for the default feed
+     * @param newestPublishedMillis is the publication time of the newest news already held
+     * @return the newer news, newest first, or null if any page failed
+     */
+    public static List<News> fetchNewsSince(String query, boolean search, long newestPublishedMillis) {
+        String fromDate = formatFromDate(newestPublishedMillis);
+        List<News> newerNews = new ArrayList<>();
+        for (int page = 1; page <= MAX_POLL_PAGES; page++) {
+            List<News> newsList = fetchNewsData(createUrl(query, search, fromDate, page));
+            if (newsList == null) {
+                // Returning part of the gap would move the newest time past the missing stories.
+                return null;
+            }
+            for (News news : newsList) {
+                // The "from-date" only has second precision and includes the news already held.
+                if (news.getPublishedMillis() > newestPublishedMillis) {
+                    newerNews.add(news);
+                }
+            }
+            if (newsList.size() < POLL_PAGE_SIZE) {
+                break;
+            }
+        }
+        return newerNews;
+    }
 
+    /**
+     * Perform the HTTP request to the given URL and parse the response.
+     */
+    private static List<News> fetchNewsData(URL url) {
         // Perform HTTP request to the URL and receive a JSON response back
         String jsonResponse = null;
         try {
@@ -77,20 +191,133 @@ final class QueryUtils {
     }
 
     /**
-     * Returns new URL object from the given string URL.
+     * Search for the given query and hand the {@link News} objects to the listener in batches as
+     * they are parsed, so the first results can be shown before the whole response has arrived.
+     *
+     * @param query is the search query typed by the user
+     * @param request can be used to cancel the search from another thread
+     * @param listener receives the batches on the calling thread
+     * @param batchSize is the number of news in each batch
+     * @return the total number of results the server has for the query, or -1 if the search
+     * failed or was cancelled
+     */
+    public static int searchNews(String query, Request request, NewsStreamListener listener, int batchSize) {
+        return streamNews(createUrl(query, true, null, 1), request, listener, batchSize);
+    }
+
+    /**
+     * Fetch one page of the archive for a date range, oldest first so the pages stay stable while
+     * they are being read, and hand the {@link News} objects to the listener in batches.
+     *
+     * @param query is the search query
+     * @param fromDate is the first day of the range, as "yyyy-MM-dd"
+     * @param toDate is the last day of the range, as "yyyy-MM-dd"
+     * @param page is the 1-based page number, of {@link #ARCHIVE_PAGE_SIZE} results each
+     * @param request can be used to cancel the fetch from another thread
+     * @param listener receives the batches on the calling thread
+     * @param batchSize is the number of news in each batch
+     * @return the total number of results in the range, or -1 if the fetch failed or was cancelled
      */
-    private static URL createUrl() {
+    public static int fetchArchivePage(String query, String fromDate, String toDate, int page,
+                                       Request request, NewsStreamListener listener, int batchSize) {
         URL url = null;
         try {
-            Uri.Builder builder = new Uri.Builder();
-            builder.scheme("https")
-                    .encodedAuthority("content.guardianapis.com")
-                    .appendPath("search")
+            Uri.Builder builder = Uri.parse(sBaseUrl).buildUpon();
+            builder.appendPath("search")
+                    .appendQueryParameter("order-by", "oldest")
+                    .appendQueryParameter("show-tags", "contributor")
+                    .appendQueryParameter("q", query)
+                    .appendQueryParameter("from-date", fromDate)
+                    .appendQueryParameter("to-date", toDate)
+                    .appendQueryParameter("page", String.valueOf(page))
+                    .appendQueryParameter("page-size", String.valueOf(ARCHIVE_PAGE_SIZE))
+                    .appendQueryParameter("api-key", "test");
+            url = new URL(builder.build().toString());
+        } catch (MalformedURLException e) {
+            Log.e(LOG_TAG, "Problem building the URL ", e);
+        }
+        return streamNews(url, request, listener, batchSize);
+    }
+
+    /**
+     * Request the given URL and stream the results in the response to the listener.
+     */
+    private static int streamNews(URL url, Request request, NewsStreamListener listener, int batchSize) {
+        if (url == null) {
+            return -1;
+        }
+
+        HttpURLConnection urlConnection = null;
+        InputStream inputStream = null;
+        try {
+            urlConnection = (HttpURLConnection) url.openConnection();
+            request.mConnection = urlConnection;
+            if (request.isCancelled()) {
+                return -1;
+            }
+            urlConnection.setReadTimeout(10000 /* milliseconds */);
+            urlConnection.setConnectTimeout(15000 /* milliseconds */);
+            urlConnection.setRequestMethod("GET");
+            urlConnection.connect();
+
+            if (urlConnection.getResponseCode() != 200) {
+                Log.e(LOG_TAG, "Error response code: " + urlConnection.getResponseCode());
+                return -1;
+            }
+            inputStream = urlConnection.getInputStream();
+            return readSearchResponse(inputStream, request, listener, batchSize);
+        } catch (IOException e) {
+            if (!request.isCancelled()) {
+                Log.e(LOG_TAG, "Error making streaming HTTP request:", e);
+            }
+            return -1;
+        } finally {
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Error closing streamed response:", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns new URL object for the search endpoint.
+     *
+     * @param query is the search query
+     * @param search is true for a search typed by the user, false for the default feed
+     * @param fromDate is the "from-date" to restrict the search to, or null for no restriction
+     * @param page is the 1-based page number, only sent with a fromDate
+     */
+    private static URL createUrl(String query, boolean search, String fromDate, int page) {
+        URL url = null;
+        try {
+            Uri.Builder builder = Uri.parse(sBaseUrl).buildUpon();
+            builder.appendPath("search")
                     .appendQueryParameter("order-by", "newest")
                     .appendQueryParameter("show-references", "author")
                     .appendQueryParameter("show-tags", "contributor")
-                    .appendQueryParameter("q", "apple")
-                    .appendQueryParameter("api-key", "test");
+                    .appendQueryParameter("q", query);
+            int pageSize = 0;
+            if (search) {
+                // Typed searches only match headlines, so a refined search can be answered from
+                // the headlines of the earlier results.
+                builder.appendQueryParameter("query-fields", "headline");
+                pageSize = SEARCH_PAGE_SIZE;
+            }
+            if (fromDate != null) {
+                builder.appendQueryParameter("from-date", fromDate)
+                        .appendQueryParameter("page", String.valueOf(page));
+                pageSize = Math.max(pageSize, POLL_PAGE_SIZE);
+            }
+            if (pageSize > 0) {
+                builder.appendQueryParameter("page-size", String.valueOf(pageSize));
+            }
+            builder.appendQueryParameter("api-key", "test");
             String stringUrl = builder.build().toString();
             url = new URL(stringUrl);
         } catch (MalformedURLException e) {
@@ -165,7 +392,8 @@ final class QueryUtils {
      * Return a list of {@link News} objects that has been built up from
      * parsing the given JSON response.
      */
-    private static List<News> extractFeatureFromJson(String newsJSON) {
+    @VisibleForTesting
+    static List<News> extractFeatureFromJson(String newsJSON) {
         // If the JSON string is empty or null, then return early.
         if (TextUtils.isEmpty(newsJSON)) {
             return null;
@@ -197,7 +425,7 @@ final class QueryUtils {
 
                 String newsHeadline;
                 try {
-                    newsHeadline = currentNews.getString("webTitle");
+                    newsHeadline = getNonNullString(currentNews, "webTitle");
                 } catch (JSONException e) {
                     newsHeadline = "News Headline Unknown";
                 }
@@ -215,30 +443,32 @@ final class QueryUtils {
                 }
 
                 String newsDate;
+                long newsPublishedMillis = 0;
                 try {
-                    newsDate = currentNews.getString("webPublicationDate");
-                    newsDate = formatDate(newsDate);
+                    newsPublishedMillis = parseDate(getNonNullString(currentNews, "webPublicationDate"));
+                    newsDate = newsPublishedMillis == 0 ? "" : formatDate(newsPublishedMillis);
                 } catch (JSONException e) {
                     newsDate = "News Date Unknown";
                 }
 
                 String newsGenre;
                 try {
-                    newsGenre = currentNews.getString("sectionName");
+                    newsGenre = getNonNullString(currentNews, "sectionName");
                 } catch (JSONException e) {
                     newsGenre = "News Genre Unknown";
                 }
 
                 String newsURL;
                 try {
-                    newsURL = currentNews.getString("webUrl");
+                    newsURL = getNonNullString(currentNews, "webUrl");
                 } catch (JSONException e) {
                     newsURL = "News Link Unknown";
                 }
 
                 // Create a new {@link News} object with the headlines, authors, date, genre, url, newsnumber,
                 // and url from the JSON response.
-                News news = new News(newsHeadline, newsAuthors, newsDate, newsGenre, newsURL, i + 1);
+                News news = new News(newsHeadline, newsAuthors, newsDate, newsGenre, newsURL, i + 1,
+                        newsPublishedMillis);
 
                 // Add the new {@link News} to the list of books.
                 newsList.add(news);
@@ -255,18 +485,164 @@ final class QueryUtils {
         return newsList;
     }
 
-    private static String formatDate(String rawDate) {
+    /**
+     * Read a search response with a streaming parser, delivering the results in batches.
+     *
+     * @return the "total" of the response, or -1 if the request was cancelled
+     */
+    @VisibleForTesting
+    static int readSearchResponse(InputStream inputStream, Request request,
+                                          NewsStreamListener listener, int batchSize) throws IOException {
+        int total = 0;
+        int newsNumber = 0;
+        List<News> batch = new ArrayList<>(batchSize);
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("response")) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if (name.equals("total")) {
+                        total = reader.nextInt();
+                    } else if (name.equals("results")) {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            if (request.isCancelled()) {
+                                return -1;
+                            }
+                            batch.add(readNews(reader, ++newsNumber));
+                            if (batch.size() == batchSize) {
+                                listener.onNews(batch);
+                                batch = new ArrayList<>(batchSize);
+                            }
+                        }
+                        reader.endArray();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            }
+            reader.endObject();
+        } catch (IllegalStateException e) {
+            // JsonReader reports malformed JSON this way.
+            Log.e("QueryUtils", "Problem parsing the streamed results", e);
+            return -1;
+        } finally {
+            reader.close();
+        }
+
+        if (request.isCancelled()) {
+            return -1;
+        }
+        if (!batch.isEmpty()) {
+            listener.onNews(batch);
+        }
+        return total;
+    }
+
+    /**
+     * Read a single result object into a {@link News}, with the same defaults as
+     * {@link #extractFeatureFromJson(String)}.
+     */
+    private static News readNews(JsonReader reader, int newsNumber) throws IOException {
+        String newsHeadline = "News Headline Unknown";
+        String newsAuthors = "Author Unknown";
+        String newsDate = "News Date Unknown";
+        long newsPublishedMillis = 0;
+        String newsGenre = "News Genre Unknown";
+        String newsURL = "News Link Unknown";
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+            } else if (name.equals("webTitle")) {
+                newsHeadline = reader.nextString();
+            } else if (name.equals("webPublicationDate")) {
+                newsPublishedMillis = parseDate(reader.nextString());
+                newsDate = newsPublishedMillis == 0 ? "" : formatDate(newsPublishedMillis);
+            } else if (name.equals("sectionName")) {
+                newsGenre = reader.nextString();
+            } else if (name.equals("webUrl")) {
+                newsURL = reader.nextString();
+            } else if (name.equals("tags")) {
+                StringBuilder authors = new StringBuilder();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (reader.nextName().equals("webTitle")) {
+                            if (authors.length() > 0) {
+                                authors.append(",");
+                            }
+                            authors.append(reader.nextString());
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                }
+                reader.endArray();
+                if (authors.length() > 0) {
+                    newsAuthors = authors.toString();
+                }
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new News(newsHeadline, newsAuthors, newsDate, newsGenre, newsURL, newsNumber,
+                newsPublishedMillis);
+    }
+
+    /**
+     * Parse a Guardian "webPublicationDate" (always UTC) into milliseconds since the epoch,
+     * or 0 if it can't be parsed.
+     */
+    private static long parseDate(String rawDate) {
         try {
             String jsonDatePattern = "yyyy-MM-dd'T'HH:mm:ss'Z'";
             SimpleDateFormat jsonFormatter = new SimpleDateFormat(jsonDatePattern, Locale.US);
-            Date parsedJsonDate = jsonFormatter.parse(rawDate);
-            String finalDatePattern = "MMM d, yyy";
-            SimpleDateFormat finalDateFormatter = new SimpleDateFormat(finalDatePattern, Locale.US);
-            return finalDateFormatter.format(parsedJsonDate);
+            jsonFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
+            return jsonFormatter.parse(rawDate).getTime();
         } catch (ParseException e) {
             Log.e("QueryUtils", "Error parsing JSON date: ", e);
-            return "";
+            return 0;
+        }
+    }
+
+    private static String formatDate(long publishedMillis) {
+        String finalDatePattern = "MMM d, yyy";
+        SimpleDateFormat finalDateFormatter = new SimpleDateFormat(finalDatePattern, Locale.US);
+        return finalDateFormatter.format(new Date(publishedMillis));
+    }
+
+    /**
+     * Format the given time as a full ISO 8601 "from-date" query value, in UTC and to the second.
+     */
+    private static String formatFromDate(long publishedMillis) {
+        SimpleDateFormat fromDateFormatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        fromDateFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return fromDateFormatter.format(new Date(publishedMillis));
+    }
+
+    /**
+     * Returns the string mapped by name, treating a null value as missing like {@link #readNews}
+     * does, instead of coercing it to "null".
+     */
+    private static String getNonNullString(JSONObject object, String name) throws JSONException {
+        if (object.isNull(name)) {
+            throw new JSONException("No value for " + name);
         }
+        return object.getString(name);
     }
 
     private static String formatAuthors(JSONArray authorsList) throws JSONException {
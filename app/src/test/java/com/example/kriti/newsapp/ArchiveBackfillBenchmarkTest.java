@@ -0,0 +1,201 @@
+package com.example.kriti.newsapp;
+
+import android.content.Context;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmark of {@link ArchiveBackfill} against {@link StubGuardianServer} in archive mode.
+ * Prints articles ingested per second and peak heap growth as the archive grows, and checks
+ * that every article is stored exactly once, including after a cancelled run is resumed.
+ *
+ * Run with ./gradlew testDebugUnitTest --tests '*ArchiveBackfillBenchmarkTest'
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ArchiveBackfillBenchmarkTest {
+
+    private static final String DATABASE_NAME = "backfill-benchmark.db";
+    private static final int DAYS = 10;
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    /** 2018-06-01T00:00:00Z */
+    private static final long FIRST_DAY = 1527811200000L;
+    private static final long LAST_DAY = FIRST_DAY + (DAYS - 1) * DAY_MILLIS;
+
+    private static final int PARALLELISM = 4;
+    private static final long PAGE_LATENCY_MILLIS = 20;
+
+    private Context context;
+    private StubGuardianServer server;
+    private NewsDbHelper dbHelper;
+
+    @Before
+    public void setUp() throws Exception {
+        context = RuntimeEnvironment.application;
+        context.deleteDatabase(DATABASE_NAME);
+        dbHelper = new NewsDbHelper(context, DATABASE_NAME);
+        server = new StubGuardianServer();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+        dbHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+        QueryUtils.setBaseUrl(BuildConfig.GUARDIAN_BASE_URL);
+    }
+
+    @Test
+    public void backfill_scalesToTensOfThousands() throws Exception {
+        System.out.println(String.format(Locale.US, "%10s %12s %12s %14s",
+                "articles", "seconds", "articles/s", "peak heap MB"));
+        int[] newsPerDaySizes = {100, 1000, 3000};
+        for (int i = 0; i < newsPerDaySizes.length; i++) {
+            int newsPerDay = newsPerDaySizes[i];
+            if (i > 0) {
+                // Fresh server and database for every size.
+                server.shutdown();
+                server = new StubGuardianServer();
+                dbHelper.close();
+                context.deleteDatabase(DATABASE_NAME);
+                dbHelper = new NewsDbHelper(context, DATABASE_NAME);
+            }
+            server.startArchive(newsPerDay, PAGE_LATENCY_MILLIS);
+            QueryUtils.setBaseUrl(server.baseUrl());
+
+            HeapSampler sampler = new HeapSampler();
+            sampler.start();
+            long start = System.nanoTime();
+            new ArchiveBackfill(dbHelper, QueryUtils.DEFAULT_QUERY, PARALLELISM).run(FIRST_DAY, LAST_DAY);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long peakBytes = sampler.finish();
+
+            long expected = (long) DAYS * newsPerDay;
+            System.out.println(String.format(Locale.US, "%10d %12.2f %12.0f %14.1f",
+                    expected, seconds, expected / seconds, peakBytes / (1024.0 * 1024.0)));
+            assertEquals(expected, dbHelper.countNews());
+        }
+    }
+
+    @Test
+    public void backfill_resumesFromCheckpointAfterCancel() throws Exception {
+        int newsPerDay = 1000;
+        long expected = (long) DAYS * newsPerDay;
+        server.startArchive(newsPerDay, PAGE_LATENCY_MILLIS);
+        QueryUtils.setBaseUrl(server.baseUrl());
+
+        final ArchiveBackfill interrupted = new ArchiveBackfill(dbHelper, QueryUtils.DEFAULT_QUERY, PARALLELISM);
+        Thread runner = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    interrupted.run(FIRST_DAY, LAST_DAY);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        runner.start();
+        while (dbHelper.countNews() < expected / 3 && runner.isAlive()) {
+            Thread.sleep(5);
+        }
+        interrupted.cancel();
+        runner.join();
+        long afterCancel = dbHelper.countNews();
+        assertTrue("cancelled run stored everything", afterCancel < expected);
+
+        long stored = new ArchiveBackfill(dbHelper, QueryUtils.DEFAULT_QUERY, PARALLELISM)
+                .run(FIRST_DAY, LAST_DAY);
+        assertEquals(expected, dbHelper.countNews());
+        // Refetched pages are ignored, so only the news missing after the cancel are counted.
+        assertEquals(expected - afterCancel, stored);
+    }
+
+    @Test
+    public void backfill_refetchesTodayUntilItIsOver() throws Exception {
+        server.startArchive(300, 0);
+        QueryUtils.setBaseUrl(server.baseUrl());
+        long now = System.currentTimeMillis();
+
+        // A finished day is fetched once.
+        assertEquals(300, new ArchiveBackfill(dbHelper, QueryUtils.DEFAULT_QUERY, PARALLELISM)
+                .run(FIRST_DAY, FIRST_DAY));
+        int requests = server.requestCount();
+        assertEquals(0, new ArchiveBackfill(dbHelper, QueryUtils.DEFAULT_QUERY, PARALLELISM)
+                .run(FIRST_DAY, FIRST_DAY));
+        assertEquals(requests, server.requestCount());
+
+        // Today is fetched again, and picks up what was published since.
+        assertEquals(300, new ArchiveBackfill(dbHelper, QueryUtils.DEFAULT_QUERY, PARALLELISM).run(now, now));
+        server.setArchiveNewsPerDay(450);
+        assertEquals(150, new ArchiveBackfill(dbHelper, QueryUtils.DEFAULT_QUERY, PARALLELISM).run(now, now));
+        assertEquals(750, dbHelper.countNews());
+    }
+
+    @Test
+    public void backfill_reportsWindowsItGaveUpOn() throws Exception {
+        // Nothing listens on port 1, so every attempt fails.
+        QueryUtils.setBaseUrl("http://127.0.0.1:1");
+        ArchiveBackfill backfill = new ArchiveBackfill(dbHelper, QueryUtils.DEFAULT_QUERY, PARALLELISM);
+        assertEquals(0, backfill.run(FIRST_DAY, FIRST_DAY));
+        assertFalse(backfill.isComplete());
+        assertFalse(backfill.isCancelled());
+    }
+
+    @Test
+    public void backfill_ofEmptyRangeStoresNothing() throws Exception {
+        assertEquals(0, new ArchiveBackfill(dbHelper, QueryUtils.DEFAULT_QUERY, PARALLELISM)
+                .run(LAST_DAY + DAY_MILLIS, FIRST_DAY));
+    }
+
+    /**
+     * Samples heap use on a background thread and reports the peak above the starting point.
+     */
+    private static class HeapSampler extends Thread {
+        private volatile boolean running = true;
+        private long baseline;
+        private long peak;
+
+        @Override
+        public synchronized void start() {
+            System.gc();
+            baseline = usedHeap();
+            peak = baseline;
+            super.start();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                peak = Math.max(peak, usedHeap());
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        long finish() throws InterruptedException {
+            running = false;
+            join();
+            return Math.max(0, peak - baseline);
+        }
+
+        private static long usedHeap() {
+            Runtime runtime = Runtime.getRuntime();
+            return runtime.totalMemory() - runtime.freeMemory();
+        }
+    }
+}
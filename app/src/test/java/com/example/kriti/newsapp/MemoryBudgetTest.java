@@ -0,0 +1,150 @@
+package com.example.kriti.newsapp;
+
+import android.content.ComponentCallbacks2;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Local unit tests for {@link MemoryBudget} and {@link BudgetedLruCache}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MemoryBudgetTest {
+
+    private static final int BUDGET_BYTES = 1000;
+
+    private MemoryBudget budget;
+    private FakeCache visible;
+    private FakeCache next;
+    private FakeCache speculative;
+
+    @Before
+    public void setUp() {
+        budget = new MemoryBudget(BUDGET_BYTES);
+        visible = new FakeCache();
+        next = new FakeCache();
+        speculative = new FakeCache();
+        // Registered lowest priority first, so the order of registration doesn't decide anything.
+        budget.register(speculative, MemoryBudget.PRIORITY_SPECULATIVE, 1);
+        budget.register(next, MemoryBudget.PRIORITY_NEXT, 1);
+        budget.register(visible, MemoryBudget.PRIORITY_VISIBLE, 2);
+    }
+
+    @Test
+    public void register_givesEachCacheItsWeightedShare() {
+        assertMaxBytes(500, 250, 250);
+    }
+
+    @Test
+    public void trimWhileRunning_dropsSpeculativeFirstAndVisibleLast() {
+        budget.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertMaxBytes(500, 250, 0);
+        budget.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertMaxBytes(500, 0, 0);
+        budget.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+        assertMaxBytes(250, 0, 0);
+    }
+
+    @Test
+    public void trimInBackground_dropsSpeculativeFirstAndVisibleLast() {
+        budget.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertMaxBytes(500, 250, 0);
+        budget.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        assertMaxBytes(500, 0, 0);
+        budget.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_MODERATE);
+        assertMaxBytes(250, 0, 0);
+        budget.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertMaxBytes(0, 0, 0);
+    }
+
+    @Test
+    public void lowMemory_dropsEverything() {
+        budget.onLowMemory();
+        assertMaxBytes(0, 0, 0);
+    }
+
+    @Test
+    public void restore_bringsBackFullShares() {
+        budget.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        budget.restore();
+        assertMaxBytes(500, 250, 250);
+    }
+
+    @Test
+    public void cache_keepsNewestValueAfterTrim() {
+        MemoryBudget cacheBudget = new MemoryBudget(100);
+        StringCache cache = new StringCache(cacheBudget);
+
+        cache.put("a", repeat(60));
+        cache.put("b", repeat(60));
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+
+        // Trimmed to 25 bytes: the existing entry goes, but a new one is still cached.
+        cacheBudget.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+        assertNull(cache.get("b"));
+        cache.put("c", repeat(60));
+        assertNotNull(cache.get("c"));
+        assertEquals(60, cache.sizeBytes());
+
+        // With no budget at all nothing is cached until it is restored.
+        cacheBudget.onLowMemory();
+        cache.put("d", repeat(60));
+        assertNull(cache.get("d"));
+        cacheBudget.restore();
+        cache.put("d", repeat(60));
+        assertNotNull(cache.get("d"));
+    }
+
+    private void assertMaxBytes(int visibleBytes, int nextBytes, int speculativeBytes) {
+        assertEquals(visibleBytes, visible.maxBytes);
+        assertEquals(nextBytes, next.maxBytes);
+        assertEquals(speculativeBytes, speculative.maxBytes);
+    }
+
+    private static String repeat(int length) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            builder.append('x');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Records the limit set by the budget.
+     */
+    private static class FakeCache implements MemoryBudget.Cache {
+        int maxBytes = -1;
+
+        @Override
+        public int sizeBytes() {
+            return 0;
+        }
+
+        @Override
+        public void setMaxBytes(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+    }
+
+    /**
+     * A cache of strings, one byte per character.
+     */
+    private static class StringCache extends BudgetedLruCache<String, String> {
+
+        StringCache(MemoryBudget budget) {
+            super(budget, MemoryBudget.PRIORITY_VISIBLE, 1);
+        }
+
+        @Override
+        protected int sizeOfBytes(String value) {
+            return value.length();
+        }
+    }
+}
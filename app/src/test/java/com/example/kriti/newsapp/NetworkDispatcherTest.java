@@ -0,0 +1,127 @@
+package com.example.kriti.newsapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests for {@link NetworkDispatcher}.
+ */
+public class NetworkDispatcherTest {
+
+    @Test
+    public void background_waitsWhileVisibleRequestRuns() throws Exception {
+        NetworkDispatcher dispatcher = new NetworkDispatcher();
+        NetworkDispatcher.Slot visible = dispatcher.acquire(NetworkDispatcher.PRIORITY_VISIBLE);
+
+        CountDownLatch backgroundStarted = acquireInBackground(dispatcher,
+                NetworkDispatcher.PRIORITY_BACKGROUND, NetworkDispatcher.NO_POSITION, null);
+        assertFalse(backgroundStarted.await(100, TimeUnit.MILLISECONDS));
+
+        visible.release();
+        assertTrue(backgroundStarted.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void visible_doesNotQueueBehindBackground() throws Exception {
+        NetworkDispatcher dispatcher = new NetworkDispatcher();
+        // Fill every background slot.
+        dispatcher.acquire(NetworkDispatcher.PRIORITY_BACKGROUND);
+        dispatcher.acquire(NetworkDispatcher.PRIORITY_BACKGROUND);
+
+        CountDownLatch visibleStarted = acquireInBackground(dispatcher,
+                NetworkDispatcher.PRIORITY_VISIBLE, NetworkDispatcher.NO_POSITION, null);
+        assertTrue(visibleStarted.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void pending_onScreenArePromotedToVisible() throws Exception {
+        NetworkDispatcher dispatcher = new NetworkDispatcher();
+        dispatcher.setVisibleRange(0, 9);
+        NetworkDispatcher.Slot first = dispatcher.acquire(NetworkDispatcher.PRIORITY_NEXT);
+        NetworkDispatcher.Slot second = dispatcher.acquire(NetworkDispatcher.PRIORITY_NEXT);
+
+        // Both "next" slots are taken, so these two wait.
+        List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        CountDownLatch far = acquireInBackground(dispatcher, NetworkDispatcher.PRIORITY_NEXT, 50, order);
+        CountDownLatch near = acquireInBackground(dispatcher, NetworkDispatcher.PRIORITY_NEXT, 25, order);
+        awaitWaiting(dispatcher, 2);
+
+        // The user scrolls to row 50, which now runs as a visible request.
+        dispatcher.setVisibleRange(45, 55);
+        assertTrue(far.await(1, TimeUnit.SECONDS));
+        assertEquals(1, near.getCount());
+        first.release();
+        second.release();
+        assertTrue(near.await(1, TimeUnit.SECONDS));
+        assertEquals(50, (int) order.get(0));
+        assertEquals(25, (int) order.get(1));
+    }
+
+    @Test
+    public void pending_areGrantedByDistanceFromScreen() throws Exception {
+        NetworkDispatcher dispatcher = new NetworkDispatcher();
+        dispatcher.setVisibleRange(0, 9);
+        NetworkDispatcher.Slot first = dispatcher.acquire(NetworkDispatcher.PRIORITY_NEXT);
+        NetworkDispatcher.Slot second = dispatcher.acquire(NetworkDispatcher.PRIORITY_NEXT);
+
+        // Neither row is on screen; row 40 is asked for first but row 15 is nearer.
+        List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        CountDownLatch far = acquireInBackground(dispatcher, NetworkDispatcher.PRIORITY_NEXT, 40, order);
+        awaitWaiting(dispatcher, 1);
+        CountDownLatch near = acquireInBackground(dispatcher, NetworkDispatcher.PRIORITY_NEXT, 15, order);
+        awaitWaiting(dispatcher, 2);
+
+        first.release();
+        assertTrue(near.await(1, TimeUnit.SECONDS));
+        assertEquals(1, far.getCount());
+        second.release();
+        assertTrue(far.await(1, TimeUnit.SECONDS));
+        assertEquals(15, (int) order.get(0));
+        assertEquals(40, (int) order.get(1));
+    }
+
+    /**
+     * Wait until the given number of requests are queued in the dispatcher.
+     */
+    private static void awaitWaiting(NetworkDispatcher dispatcher, int count) {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (dispatcher.waitingCount() < count) {
+            assertTrue("requests didn't start waiting", System.currentTimeMillis() < deadline);
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Acquire a slot on another thread, recording its position in order once granted.
+     */
+    private static CountDownLatch acquireInBackground(final NetworkDispatcher dispatcher, final int priority,
+                                                      final int position, final List<Integer> order) {
+        final CountDownLatch started = new CountDownLatch(1);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    dispatcher.acquire(priority, position);
+                    if (order != null) {
+                        order.add(position);
+                    }
+                    started.countDown();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return started;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.kriti.newsapp;
+
+import android.content.Context;
+import android.view.View;
+import android.widget.ListView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * End-to-end load test of NewsLoader -> parse -> NewsAdapter binding against
+ * {@link StubGuardianServer}. Prints request latency percentiles, parse throughput and bind
+ * time for each scenario, and fails if any of them regress past generous limits.
+ *
+ * Run with ./gradlew testDebugUnitTest --tests '*NewsPipelineLoadTest'
+ */
+@RunWith(RobolectricTestRunner.class)
+public class NewsPipelineLoadTest {
+
+    private static final int REQUESTS_PER_SCENARIO = 20;
+    private static final int PARSE_ROUNDS = 20;
+
+    /** Allowed latency on top of what the scenario itself injects. */
+    private static final long LATENCY_SLACK_MILLIS = 1000;
+
+    private static final double MIN_PARSE_ITEMS_PER_SECOND = 2000;
+    private static final double MAX_BIND_MILLIS_PER_ITEM = 20;
+
+    private static final StubGuardianServer.Scenario[] SCENARIOS = {
+            new StubGuardianServer.Scenario("default page", 10, 0, 0, 0),
+            new StubGuardianServer.Scenario("large page", 200, 0, 0, 0),
+            new StubGuardianServer.Scenario("slow 3G", 10, 300, 0, 50 * 1024),
+            new StubGuardianServer.Scenario("flaky server", 10, 50, 0.2, 0),
+    };
+
+    private Context context;
+    private StubGuardianServer server;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (server != null) {
+            server.shutdown();
+        }
+        QueryUtils.setBaseUrl(BuildConfig.GUARDIAN_BASE_URL);
+    }
+
+    @Test
+    public void pipeline_staysWithinLimits() throws Exception {
+        System.out.println(String.format(Locale.US, "%-14s %8s %8s %8s %7s %12s %10s",
+                "scenario", "p50 ms", "p90 ms", "p99 ms", "errors", "parse it/s", "bind ms"));
+        for (StubGuardianServer.Scenario scenario : SCENARIOS) {
+            runScenario(scenario);
+        }
+    }
+
+    private void runScenario(StubGuardianServer.Scenario scenario) throws Exception {
+        server = new StubGuardianServer();
+        server.start(scenario);
+        QueryUtils.setBaseUrl(server.baseUrl());
+        String body = server.responseBody(scenario.resultCount);
+
+        // Request latency, measured through the loader so it includes reading and parsing.
+        long[] latencies = new long[REQUESTS_PER_SCENARIO];
+        int errors = 0;
+        List<News> lastNews = null;
+        for (int i = 0; i < REQUESTS_PER_SCENARIO; i++) {
+            long start = System.nanoTime();
+            List<News> newsList = new NewsLoader(context).loadInBackground();
+            latencies[i] = (System.nanoTime() - start) / 1000000;
+            if (newsList == null || newsList.isEmpty()) {
+                errors++;
+            } else {
+                lastNews = newsList;
+            }
+        }
+        assertEquals(REQUESTS_PER_SCENARIO, server.requestCount());
+
+        // Parse throughput, without the network.
+        QueryUtils.extractFeatureFromJson(body);
+        long parseStart = System.nanoTime();
+        for (int i = 0; i < PARSE_ROUNDS; i++) {
+            QueryUtils.extractFeatureFromJson(body);
+        }
+        double parseSeconds = (System.nanoTime() - parseStart) / 1e9;
+        double itemsPerSecond = PARSE_ROUNDS * scenario.resultCount / parseSeconds;
+
+        // Bind time per item, recycling the row view the way ListView does.
+        assertTrue(scenario.name + ": no successful response", lastNews != null);
+        NewsAdapter adapter = new NewsAdapter(context, lastNews);
+        ListView parent = new ListView(context);
+        View convertView = adapter.getView(0, null, parent);
+        long bindStart = System.nanoTime();
+        for (int position = 0; position < adapter.getCount(); position++) {
+            convertView = adapter.getView(position, convertView, parent);
+        }
+        double bindMillisPerItem = (System.nanoTime() - bindStart) / 1e6 / adapter.getCount();
+
+        Arrays.sort(latencies);
+        System.out.println(String.format(Locale.US, "%-14s %8d %8d %8d %7d %12.0f %10.3f",
+                scenario.name, percentile(latencies, 50), percentile(latencies, 90),
+                percentile(latencies, 99), errors, itemsPerSecond, bindMillisPerItem));
+
+        server.shutdown();
+        server = null;
+
+        long transferMillis = scenario.bytesPerSecond == 0
+                ? 0 : body.length() * 1000L / scenario.bytesPerSecond;
+        long latencyLimit = scenario.latencyMillis + transferMillis + LATENCY_SLACK_MILLIS;
+        assertTrue(scenario.name + ": p90 latency over " + latencyLimit + " ms",
+                percentile(latencies, 90) <= latencyLimit);
+        if (scenario.errorRate == 0) {
+            assertEquals(scenario.name + ": unexpected errors", 0, errors);
+        }
+        assertTrue(scenario.name + ": parse throughput under " + MIN_PARSE_ITEMS_PER_SECOND,
+                itemsPerSecond >= MIN_PARSE_ITEMS_PER_SECOND);
+        assertTrue(scenario.name + ": bind time over " + MAX_BIND_MILLIS_PER_ITEM + " ms per item",
+                bindMillisPerItem <= MAX_BIND_MILLIS_PER_ITEM);
+    }
+
+    /**
+     * Nearest-rank percentile of an already sorted array.
+     */
+    private static long percentile(long[] sorted, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
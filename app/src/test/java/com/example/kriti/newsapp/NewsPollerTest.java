@@ -0,0 +1,88 @@
+package com.example.kriti.newsapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit tests for {@link NewsPoller.PublishRate}.
+ */
+public class NewsPollerTest {
+
+    private static final long MINUTE = 60 * 1000;
+
+    /** Publication time of the newest story held before each poll. */
+    private static final long SINCE = 1529746212000L;
+
+    @Test
+    public void interval_startsAtInitialInterval() {
+        assertEquals(2 * MINUTE, new NewsPoller.PublishRate().nextIntervalMillis());
+    }
+
+    @Test
+    public void interval_followsMovingAverageOfGaps() {
+        NewsPoller.PublishRate rate = new NewsPoller.PublishRate();
+
+        // 3 stories in 30 minutes: one every 10 minutes.
+        rate.recordNewStories(SINCE, stories(SINCE + 30 * MINUTE, 3));
+        assertEquals(10 * MINUTE, rate.nextIntervalMillis());
+
+        // 2 stories in 8 minutes: 0.3 * 4 + 0.7 * 10 minutes.
+        rate.recordNewStories(SINCE, stories(SINCE + 8 * MINUTE, 2));
+        assertEquals(8.2 * MINUTE, rate.nextIntervalMillis(), 1);
+    }
+
+    @Test
+    public void interval_ignoresStoriesWithoutPreviousNewest() {
+        NewsPoller.PublishRate rate = new NewsPoller.PublishRate();
+        rate.recordNewStories(0, stories(SINCE, 10));
+        assertEquals(2 * MINUTE, rate.nextIntervalMillis());
+    }
+
+    @Test
+    public void interval_isClampedToOneToFifteenMinutes() {
+        NewsPoller.PublishRate busy = new NewsPoller.PublishRate();
+        busy.recordNewStories(SINCE, stories(SINCE + 10 * 1000, 5));
+        assertEquals(MINUTE, busy.nextIntervalMillis());
+
+        NewsPoller.PublishRate quiet = new NewsPoller.PublishRate();
+        quiet.recordNewStories(SINCE, stories(SINCE + 3 * 60 * MINUTE, 1));
+        assertEquals(15 * MINUTE, quiet.nextIntervalMillis());
+    }
+
+    @Test
+    public void emptyPolls_backOffUpToTheCap() {
+        NewsPoller.PublishRate rate = new NewsPoller.PublishRate();
+        rate.recordNewStories(SINCE, stories(SINCE + MINUTE, 1));
+        assertEquals(MINUTE, rate.nextIntervalMillis());
+
+        rate.recordEmptyPoll();
+        assertEquals((long) (1.5 * MINUTE), rate.nextIntervalMillis());
+        rate.recordEmptyPoll();
+        assertEquals((long) (2.25 * MINUTE), rate.nextIntervalMillis());
+
+        for (int i = 0; i < 20; i++) {
+            rate.recordEmptyPoll();
+        }
+        assertEquals(15 * MINUTE, rate.nextIntervalMillis());
+
+        // New stories reset the back-off.
+        rate.recordNewStories(SINCE, stories(SINCE + MINUTE, 1));
+        assertEquals(MINUTE, rate.nextIntervalMillis());
+    }
+
+    /**
+     * Returns count stories, the newest published at newestMillis.
+     */
+    private static List<News> stories(long newestMillis, int count) {
+        List<News> newsList = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            newsList.add(new News("Headline " + i, "Author", "", "Technology",
+                    "https://www.theguardian.com/" + i, i + 1, newestMillis - i * 1000L));
+        }
+        return newsList;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.kriti.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link NewsSearcher} against {@link StubGuardianServer}: debouncing, cancellation
+ * and answering refined queries from the cache. The main looper is paused, so the test decides
+ * when debounce delays pass and when results are delivered.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class NewsSearcherTest {
+
+    /** How long to wait for a search running on a background thread. */
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private StubGuardianServer server;
+    private RecordingListener listener;
+    private NewsSearcher searcher;
+
+    @Before
+    public void setUp() throws Exception {
+        ShadowLooper.pauseMainLooper();
+        server = new StubGuardianServer();
+        listener = new RecordingListener();
+        searcher = new NewsSearcher(RuntimeEnvironment.application, listener);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        searcher.shutdown();
+        server.shutdown();
+        QueryUtils.setBaseUrl(BuildConfig.GUARDIAN_BASE_URL);
+    }
+
+    @Test
+    public void typing_isDebouncedToOneRequest() throws Exception {
+        startServer(0);
+        String query = "technology";
+        for (int i = 1; i <= query.length(); i++) {
+            searcher.search(query.substring(0, i));
+            ShadowLooper.idleMainLooper(50, TimeUnit.MILLISECONDS);
+        }
+        ShadowLooper.idleMainLooper(300, TimeUnit.MILLISECONDS);
+        awaitFinished(query);
+
+        assertEquals(1, server.requestCount());
+        assertEquals(10, listener.shown.size());
+    }
+
+    @Test
+    public void cancelledSearch_deliversNoBatches() throws Exception {
+        startServer(500);
+        searcher.search("science");
+        ShadowLooper.idleMainLooper(300, TimeUnit.MILLISECONDS);
+        searcher.cancel();
+
+        // Give the cancelled request time to finish, delivering whatever it would.
+        long deadline = System.currentTimeMillis() + 1000;
+        while (System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            ShadowLooper.runUiThreadTasks();
+        }
+        assertEquals(0, listener.batches);
+        assertTrue(listener.finished.isEmpty());
+    }
+
+    @Test
+    public void refinedCompleteQuery_isAnsweredWithoutRequest() throws Exception {
+        startServer(0);
+        searcher.search("apple");
+        ShadowLooper.idleMainLooper(300, TimeUnit.MILLISECONDS);
+        awaitFinished("apple");
+        assertEquals(1, server.requestCount());
+        assertEquals(10, listener.shown.size());
+
+        // Answered straight away, without a debounce delay or a request.
+        searcher.search("Apple  Music");
+        assertTrue(listener.finished.contains("apple music"));
+        assertEquals(2, listener.shown.size());
+        for (News news : listener.shown) {
+            assertTrue(news.getHeadline().contains("Music"));
+        }
+
+        // "us" is only part of a word ("Music", "Samsung"), so nothing matches.
+        searcher.search("apple us");
+        assertTrue(listener.finished.contains("apple us"));
+        assertEquals(0, listener.shown.size());
+
+        // Operators need the server.
+        searcher.search("apple OR music");
+        assertFalse(listener.finished.contains("apple OR music"));
+        assertEquals(1, server.requestCount());
+    }
+
+    private void startServer(long latencyMillis) throws Exception {
+        server.start(new StubGuardianServer.Scenario("search", 10, latencyMillis, 0, 0));
+        QueryUtils.setBaseUrl(server.baseUrl());
+    }
+
+    /**
+     * Run the main looper until the search for the query has finished.
+     */
+    private void awaitFinished(String query) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!listener.finished.contains(query) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            ShadowLooper.runUiThreadTasks();
+        }
+        assertTrue("search for " + query + " didn't finish", listener.finished.contains(query));
+    }
+
+    /**
+     * Keeps what the list would show.
+     */
+    private static class RecordingListener implements NewsSearcher.Listener {
+        final List<News> shown = new ArrayList<>();
+        final List<String> finished = new ArrayList<>();
+        int batches;
+
+        @Override
+        public void onSearchResults(String query, List<News> news, boolean replace) {
+            batches++;
+            if (replace) {
+                shown.clear();
+            }
+            shown.addAll(news);
+        }
+
+        @Override
+        public void onSearchFinished(String query) {
+            finished.add(query);
+        }
+    }
+}
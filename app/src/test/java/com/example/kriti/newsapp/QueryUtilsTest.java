@@ -0,0 +1,82 @@
+package com.example.kriti.newsapp;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit tests for the response parsers in {@link QueryUtils}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class QueryUtilsTest {
+
+    /** Results with a missing tags array, null fields and an empty tags array. */
+    private static final String RESPONSE = "{\"response\":{\"status\":\"ok\",\"total\":3,\"results\":["
+            + "{\"webTitle\":\"Only a headline\"},"
+            + "{\"webTitle\":null,\"sectionName\":null,\"webUrl\":null,\"webPublicationDate\":null,"
+            + "\"tags\":null},"
+            + "{\"webTitle\":\"No authors\",\"sectionName\":\"Technology\","
+            + "\"webUrl\":\"https://www.theguardian.com/technology/1\","
+            + "\"webPublicationDate\":\"2018-06-23T09:30:12Z\",\"tags\":[]}"
+            + "]}}";
+
+    @Test
+    public void readSearchResponse_matchesExtractFeatureFromJson() throws Exception {
+        List<News> expected = QueryUtils.extractFeatureFromJson(RESPONSE);
+
+        final List<News> streamed = new ArrayList<>();
+        int total = QueryUtils.readSearchResponse(new ByteArrayInputStream(RESPONSE.getBytes("UTF-8")),
+                new QueryUtils.Request(), new QueryUtils.NewsStreamListener() {
+                    @Override
+                    public void onNews(List<News> batch) {
+                        streamed.addAll(batch);
+                    }
+                }, 2);
+
+        assertEquals(3, total);
+        assertEquals(expected.size(), streamed.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getHeadline(), streamed.get(i).getHeadline());
+            assertEquals(expected.get(i).getAuthor(), streamed.get(i).getAuthor());
+            assertEquals(expected.get(i).getDate(), streamed.get(i).getDate());
+            assertEquals(expected.get(i).getGenre(), streamed.get(i).getGenre());
+            assertEquals(expected.get(i).getUrl(), streamed.get(i).getUrl());
+            assertEquals(expected.get(i).getNewsNumber(), streamed.get(i).getNewsNumber());
+            assertEquals(expected.get(i).getPublishedMillis(), streamed.get(i).getPublishedMillis());
+        }
+    }
+
+    @Test
+    public void extractFeatureFromJson_usesDefaultsForNullFields() {
+        News news = QueryUtils.extractFeatureFromJson(RESPONSE).get(1);
+        assertEquals("News Headline Unknown", news.getHeadline());
+        assertEquals("Author Unknown", news.getAuthor());
+        assertEquals("News Date Unknown", news.getDate());
+        assertEquals("News Genre Unknown", news.getGenre());
+        assertEquals("News Link Unknown", news.getUrl());
+        assertEquals(0, news.getPublishedMillis());
+    }
+
+    @Test
+    public void readSearchResponse_stopsWhenCancelled() throws Exception {
+        QueryUtils.Request request = new QueryUtils.Request();
+        request.cancel();
+        final List<News> streamed = new ArrayList<>();
+        int total = QueryUtils.readSearchResponse(new ByteArrayInputStream(RESPONSE.getBytes("UTF-8")),
+                request, new QueryUtils.NewsStreamListener() {
+                    @Override
+                    public void onNews(List<News> batch) {
+                        streamed.addAll(batch);
+                    }
+                }, 2);
+
+        assertEquals(-1, total);
+        assertEquals(0, streamed.size());
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.kriti.newsapp;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * A local stand-in for the Guardian search API.
+ *
+ * It replays the recorded response in guardian_search.json, repeated to the page size of the
+ * current {@link Scenario}, and applies the scenario's latency, error rate and throughput.
+ * In archive mode it instead serves a fixed number of results per day, paged the way the
+ * real API pages a "from-date"/"to-date" search.
+ */
+class StubGuardianServer {
+
+    /**
+     * How the stub server behaves for one run of the load test.
+     */
+    static class Scenario {
+        final String name;
+        final int resultCount;
+        final long latencyMillis;
+        final double errorRate;
+        final long bytesPerSecond;
+
+        /**
+         * @param name is shown in the report
+         * @param resultCount is the number of results in each response
+         * @param latencyMillis is how long the server waits before sending the body
+         * @param errorRate is the fraction of requests answered with HTTP 500
+         * @param bytesPerSecond limits the response throughput, or 0 for no limit
+         */
+        Scenario(String name, int resultCount, long latencyMillis, double errorRate, long bytesPerSecond) {
+            this.name = name;
+            this.resultCount = resultCount;
+            this.latencyMillis = latencyMillis;
+            this.errorRate = errorRate;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+    }
+
+    private static final String RECORDING = "guardian_search.json";
+
+    private final MockWebServer server = new MockWebServer();
+    private final JSONArray recordedResults;
+    private volatile int archiveNewsPerDay;
+
+    /**
+     * Constructs a new {@link StubGuardianServer} from the recorded response.
+     */
+    StubGuardianServer() throws IOException, JSONException {
+        InputStream inputStream = getClass().getClassLoader().getResourceAsStream(RECORDING);
+        try {
+            JSONObject recording = new JSONObject(readFully(inputStream));
+            recordedResults = recording.getJSONObject("response").getJSONArray("results");
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Start serving the given scenario.
+     */
+    void start(final Scenario scenario) throws IOException, JSONException {
+        final String body = responseBody(scenario.resultCount);
+        // Seeded so every run of a scenario fails the same requests.
+        final Random random = new Random(42);
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (random.nextDouble() < scenario.errorRate) {
+                    return new MockResponse().setResponseCode(500);
+                }
+                MockResponse response = new MockResponse()
+                        .setHeader("Content-Type", "application/json")
+                        .setBody(body)
+                        .setHeadersDelay(scenario.latencyMillis, TimeUnit.MILLISECONDS);
+                if (scenario.bytesPerSecond > 0) {
+                    // Release the body in tenth-of-a-second slices to approximate a steady link.
+                    response.throttleBody(Math.max(1, scenario.bytesPerSecond / 10), 100, TimeUnit.MILLISECONDS);
+                }
+                return response;
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Start serving an archive with the given number of results on every day.
+     *
+     * @param newsPerDay is the number of results for each day
+     * @param latencyMillis is how long the server waits before sending each page
+     */
+    void startArchive(int newsPerDay, final long latencyMillis) throws IOException {
+        archiveNewsPerDay = newsPerDay;
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String day = request.getRequestUrl().queryParameter("from-date");
+                int page = Integer.parseInt(request.getRequestUrl().queryParameter("page"));
+                int pageSize = Integer.parseInt(request.getRequestUrl().queryParameter("page-size"));
+                try {
+                    return new MockResponse()
+                            .setHeader("Content-Type", "application/json")
+                            .setBody(archivePage(day, page, pageSize, archiveNewsPerDay))
+                            .setHeadersDelay(latencyMillis, TimeUnit.MILLISECONDS);
+                } catch (JSONException | ParseException e) {
+                    return new MockResponse().setResponseCode(400);
+                }
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Change the number of results on every day of the archive, e.g. to publish more news today.
+     */
+    void setArchiveNewsPerDay(int newsPerDay) {
+        archiveNewsPerDay = newsPerDay;
+    }
+
+    /**
+     * Returns the base URL to pass to {@link QueryUtils#setBaseUrl(String)}.
+     */
+    String baseUrl() {
+        String url = server.url("/").toString();
+        return url.substring(0, url.length() - 1);
+    }
+
+    /**
+     * Returns the number of requests the server has received.
+     */
+    int requestCount() {
+        return server.getRequestCount();
+    }
+
+    void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    /**
+     * Build a search response with the given number of results by repeating the recorded ones,
+     * each with a distinct id, title and an older publication date than the one before.
+     */
+    String responseBody(int resultCount) throws JSONException {
+        SimpleDateFormat dateFormatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        dateFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
+        long newest = 1529746212000L;
+
+        JSONArray results = new JSONArray();
+        for (int i = 0; i < resultCount; i++) {
+            JSONObject result = new JSONObject(
+                    recordedResults.getJSONObject(i % recordedResults.length()).toString());
+            result.put("id", result.getString("id") + "-" + i);
+            result.put("webTitle", result.getString("webTitle") + " (" + i + ")");
+            result.put("webPublicationDate", dateFormatter.format(new Date(newest - i * 60000L)));
+            results.put(result);
+        }
+
+        JSONObject response = new JSONObject();
+        response.put("status", "ok");
+        response.put("total", resultCount);
+        response.put("pageSize", resultCount);
+        response.put("currentPage", 1);
+        response.put("pages", 1);
+        response.put("orderBy", "newest");
+        response.put("results", results);
+        return new JSONObject().put("response", response).toString();
+    }
+
+    /**
+     * Build one page of a day's archive, oldest first, with URLs unique across the whole archive.
+     */
+    private String archivePage(String day, int page, int pageSize, int newsPerDay)
+            throws JSONException, ParseException {
+        SimpleDateFormat dayFormatter = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+        dayFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
+        SimpleDateFormat dateFormatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        dateFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
+        long dayStart = dayFormatter.parse(day).getTime();
+        long spacing = 24 * 60 * 60 * 1000L / newsPerDay;
+
+        JSONArray results = new JSONArray();
+        int first = (page - 1) * pageSize;
+        for (int i = first; i < Math.min(newsPerDay, first + pageSize); i++) {
+            JSONObject result = new JSONObject(
+                    recordedResults.getJSONObject(i % recordedResults.length()).toString());
+            result.put("id", "archive/" + day + "/" + i);
+            result.put("webUrl", "https://www.theguardian.com/archive/" + day + "/" + i);
+            result.put("webPublicationDate", dateFormatter.format(new Date(dayStart + i * spacing)));
+            results.put(result);
+        }
+
+        JSONObject response = new JSONObject();
+        response.put("status", "ok");
+        response.put("total", newsPerDay);
+        response.put("pageSize", pageSize);
+        response.put("currentPage", page);
+        response.put("pages", (newsPerDay + pageSize - 1) / pageSize);
+        response.put("orderBy", "oldest");
+        response.put("results", results);
+        return new JSONObject().put("response", response).toString();
+    }
+
+    private static String readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return new String(output.toByteArray(), Charset.forName("UTF-8"));
+    }
+}